@@ -0,0 +1,630 @@
+package MiniC.AstGen;
+
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenStream;
+
+// An Ast holds the abstract syntax tree of one program in flat int
+// arrays: node n has kind kinds[n], its first child firstChild[n], its
+// next sibling nextSibling[n] and the token that names it tokens[n]
+// (an index into the token table, or NONE). Nodes are numbered in the
+// order they are created; the root is the PROGRAM node returned by
+// root(). There is no object per node; AstNode gives typed views.
+// Compound statements also record their closing "}" (endToken()).
+//
+// Tokens read from a TokenStream are kept as their index in the stream
+// and made into Token objects when asked for. Such a tree can outlive
+// edits of the stream: moveTokens() records how an edit moved the
+// tokens, and the index of a token is brought up to date lazily, so
+// reusing a tree after an edit does not cost time per token.
+//
+// Token and children of the node kinds, in order ("?" marks a child
+// that is an EMPTY node if it is absent from the source):
+//
+//   PROGRAM          (FUNDECL | VARDECL)*
+//   FUNDECL     ID   TYPE PARAMS (COMPOUNDSTMT | SKIPPEDBODY)
+//   PARAMS           PARAMDECL*
+//   PARAMDECL   ID   TYPE ARRAYSIZE?
+//   VARDECL     ID   TYPE ARRAYSIZE? initializer?
+//   TYPE        type -
+//   ARRAYSIZE   int  -
+//   INITLIST    "{"  expr*
+//   COMPOUNDSTMT "{" VARDECL* stmt*
+//   IFSTMT      if   expr stmt stmt*        (one stmt per "else")
+//   WHILESTMT   while  expr stmt
+//   FORSTMT     for  ASSIGNSTMT? expr? ASSIGNSTMT? stmt
+//   RETURNSTMT  return  expr?
+//   ASSIGNSTMT  ID   expr
+//   ARRAYASSIGNSTMT ID  expr expr           (index, value)
+//   CALLSTMT    ID   expr*
+//   BINARYEXPR  op   expr expr
+//   UNARYEXPR   op   expr
+//   IDEXPR      ID   -
+//   CALLEXPR    ID   expr*
+//   ARRAYEXPR   ID   expr
+//   INTEXPR, FLOATEXPR, BOOLEXPR, STRINGEXPR   literal   -
+//   EMPTY            -
+//   SKIPPEDBODY "{"  -        (body skipped by a skeleton parse)
+
+public class Ast {
+
+  public static final int NONE = -1;
+
+  public final static int
+    PROGRAM		= 0,
+    FUNDECL		= 1,
+    PARAMS		= 2,
+    PARAMDECL		= 3,
+    VARDECL		= 4,
+    TYPE		= 5,
+    ARRAYSIZE		= 6,
+    INITLIST		= 7,
+    COMPOUNDSTMT	= 8,
+    IFSTMT		= 9,
+    WHILESTMT		= 10,
+    FORSTMT		= 11,
+    RETURNSTMT		= 12,
+    ASSIGNSTMT		= 13,
+    ARRAYASSIGNSTMT	= 14,
+    CALLSTMT		= 15,
+    BINARYEXPR		= 16,
+    UNARYEXPR		= 17,
+    IDEXPR		= 18,
+    CALLEXPR		= 19,
+    ARRAYEXPR		= 20,
+    INTEXPR		= 21,
+    FLOATEXPR		= 22,
+    BOOLEXPR		= 23,
+    STRINGEXPR		= 24,
+    EMPTY		= 25,
+    SKIPPEDBODY		= 26;
+
+  private static String[] kindTable = new String[] {
+    "Program", "FunDecl", "Params", "ParamDecl", "VarDecl", "Type",
+    "ArraySize", "InitList", "CompoundStmt", "IfStmt", "WhileStmt",
+    "ForStmt", "ReturnStmt", "AssignStmt", "ArrayAssignStmt", "CallStmt",
+    "BinaryExpr", "UnaryExpr", "IdExpr", "CallExpr", "ArrayExpr",
+    "IntExpr", "FloatExpr", "BoolExpr", "StringExpr", "Empty",
+    "SkippedBody"
+  };
+
+  private int[] kinds;
+  private int[] firstChild;
+  private int[] nextSibling;
+  private int[] lastChild;	// only needed while the tree is built
+  private int[] tokens;
+  private int[] ends;		// token of the closing "}", or NONE
+  private int count;
+  private Token[] tokenTable;	// null for tokens read from the stream
+  private int nrTokens;
+  private int root;
+  private int dead;	// nodes replaceChild() and append() left out of the tree
+
+  // per token table entry: its index in the stream (-1 if it was not
+  // read from one) and the number of edits it has been moved over
+  private int[] tokenIndexes;
+  private int[] tokenEdits;
+  // the edits: tokens from editEnds[e] on moved by editShifts[e]
+  private int[] editEnds = new int[4];
+  private int[] editShifts = new int[4];
+  private int nrEdits;
+  private TokenStream stream;	// the stream, after the last edit
+
+  public Ast (int capacity) {
+    capacity = Math.max(capacity, 16);
+    kinds = new int[capacity];
+    firstChild = new int[capacity];
+    nextSibling = new int[capacity];
+    lastChild = new int[capacity];
+    tokens = new int[capacity];
+    ends = new int[capacity];
+    tokenTable = new Token[capacity];
+    tokenIndexes = new int[capacity];
+    tokenEdits = new int[capacity];
+    root = NONE;
+  }
+
+  public Ast () {
+    this(256);
+  }
+
+  // Creates a childless node. t may be null for nodes without a token.
+  public int node (int kind, Token t) {
+    if (count == kinds.length) {
+       int capacity = 2 * count;
+       kinds = java.util.Arrays.copyOf(kinds, capacity);
+       firstChild = java.util.Arrays.copyOf(firstChild, capacity);
+       nextSibling = java.util.Arrays.copyOf(nextSibling, capacity);
+       lastChild = java.util.Arrays.copyOf(lastChild, capacity);
+       tokens = java.util.Arrays.copyOf(tokens, capacity);
+       ends = java.util.Arrays.copyOf(ends, capacity);
+    }
+    kinds[count] = kind;
+    firstChild[count] = NONE;
+    nextSibling[count] = NONE;
+    lastChild[count] = NONE;
+    tokens[count] = (t == null) ? NONE : addToken(t);
+    ends[count] = NONE;
+    return count++;
+  }
+
+  // Records the closing token of node.
+  public void setEnd (int node, Token t) {
+    ends[node] = addToken(t);
+  }
+
+  // Appends child to the children of parent. child must not have a
+  // parent yet.
+  public void add (int parent, int child) {
+    if (firstChild[parent] == NONE) {
+       firstChild[parent] = child;
+    } else {
+       nextSibling[lastChild[parent]] = child;
+    }
+    lastChild[parent] = child;
+  }
+
+  // Puts newChild in the place of oldChild among the children of
+  // parent. newChild must not have a parent yet.
+  public void replaceChild (int parent, int oldChild, int newChild) {
+    nextSibling[newChild] = nextSibling[oldChild];
+    nextSibling[oldChild] = NONE;
+    if (firstChild[parent] == oldChild) {
+       firstChild[parent] = newChild;
+    } else {
+       int c = firstChild[parent];
+       while (nextSibling[c] != oldChild) {
+          c = nextSibling[c];
+       }
+       nextSibling[c] = newChild;
+    }
+    if (lastChild[parent] == oldChild) {
+       lastChild[parent] = newChild;
+    }
+    dead += subtreeSize(oldChild);
+  }
+
+  // Copies all nodes of other into this tree and returns the number
+  // of the copy of node. The copies keep their order and structure;
+  // nodes of other that are not under node are copied too, but are
+  // not linked to anything.
+  public int append (Ast other, int node) {
+    int offset = count;
+    int tokenOffset = nrTokens;
+    int n = other.count;
+    while (count + n > kinds.length) {
+       int capacity = 2 * kinds.length;
+       kinds = java.util.Arrays.copyOf(kinds, capacity);
+       firstChild = java.util.Arrays.copyOf(firstChild, capacity);
+       nextSibling = java.util.Arrays.copyOf(nextSibling, capacity);
+       lastChild = java.util.Arrays.copyOf(lastChild, capacity);
+       tokens = java.util.Arrays.copyOf(tokens, capacity);
+       ends = java.util.Arrays.copyOf(ends, capacity);
+    }
+    if (nrTokens + other.nrTokens > tokenTable.length) {
+       growTokens(Math.max(2 * tokenTable.length, nrTokens + other.nrTokens));
+    }
+    // other was built from the current stream
+    if (stream == null) {
+       stream = other.stream;
+    }
+    System.arraycopy(other.tokenTable, 0, tokenTable, nrTokens, other.nrTokens);
+    System.arraycopy(other.tokenIndexes, 0, tokenIndexes, nrTokens, other.nrTokens);
+    java.util.Arrays.fill(tokenEdits, nrTokens, nrTokens + other.nrTokens, nrEdits);
+    nrTokens += other.nrTokens;
+    for (int i = 0; i < n; i++) {
+       kinds[count + i] = other.kinds[i];
+       firstChild[count + i] = shift(other.firstChild[i], offset);
+       nextSibling[count + i] = shift(other.nextSibling[i], offset);
+       lastChild[count + i] = shift(other.lastChild[i], offset);
+       tokens[count + i] = shift(other.tokens[i], tokenOffset);
+       ends[count + i] = shift(other.ends[i], tokenOffset);
+    }
+    count += n;
+    dead += n - subtreeSize(node + offset);
+    return node + offset;
+  }
+
+  // The number of nodes in the subtree of node.
+  public int subtreeSize (int node) {
+    int[] stack = new int[16];
+    int top = 0;
+    int size = 0;
+
+    stack[top++] = node;
+    while (top > 0) {
+       int n = stack[--top];
+       size++;
+       for (int c = firstChild[n]; c != NONE; c = nextSibling[c]) {
+          if (top == stack.length) {
+             stack = java.util.Arrays.copyOf(stack, 2 * top);
+          }
+          stack[top++] = c;
+       }
+    }
+    return size;
+  }
+
+  // The number of nodes that are no longer part of the tree, such as
+  // the subtrees replaced by replaceChild(). compact() reclaims them.
+  public int deadNodes () {
+    return dead;
+  }
+
+  // Moves the nodes under the root to the front, in the order they
+  // were created, and drops all others; the token table is compacted
+  // the same way. Returns the new number of every old node, or NONE
+  // for the nodes that were dropped.
+  public int[] compact () {
+    int[] map = new int[count];
+    java.util.Arrays.fill(map, NONE);
+    int[] stack = new int[16];
+    int top = 0;
+    if (root != NONE) {
+       stack[top++] = root;
+    }
+    while (top > 0) {
+       int n = stack[--top];
+       map[n] = 0;
+       for (int c = firstChild[n]; c != NONE; c = nextSibling[c]) {
+          if (top == stack.length) {
+             stack = java.util.Arrays.copyOf(stack, 2 * top);
+          }
+          stack[top++] = c;
+       }
+    }
+
+    int[] tokenMap = new int[nrTokens];
+    java.util.Arrays.fill(tokenMap, NONE);
+    int live = 0;
+    for (int n = 0; n < count; n++) {
+       if (map[n] != NONE) {
+          map[n] = live++;
+          if (tokens[n] != NONE) {
+             tokenMap[tokens[n]] = 0;
+          }
+          if (ends[n] != NONE) {
+             tokenMap[ends[n]] = 0;
+          }
+       }
+    }
+    int liveTokens = 0;
+    for (int t = 0; t < nrTokens; t++) {
+       if (tokenMap[t] != NONE) {
+          tokenMap[t] = liveTokens;
+          tokenTable[liveTokens] = tokenTable[t];
+          tokenIndexes[liveTokens] = tokenIndexes[t];
+          tokenEdits[liveTokens] = tokenEdits[t];
+          liveTokens++;
+       }
+    }
+    java.util.Arrays.fill(tokenTable, liveTokens, nrTokens, null);
+
+    // map[n] <= n, so every node moves to a place that is free by then
+    for (int n = 0; n < count; n++) {
+       int m = map[n];
+       if (m != NONE) {
+          kinds[m] = kinds[n];
+          firstChild[m] = shift(firstChild[n], map);
+          nextSibling[m] = shift(nextSibling[n], map);
+          lastChild[m] = shift(lastChild[n], map);
+          tokens[m] = shift(tokens[n], tokenMap);
+          ends[m] = shift(ends[n], tokenMap);
+       }
+    }
+    if (root != NONE) {
+       root = map[root];
+    }
+    count = live;
+    nrTokens = liveTokens;
+    dead = 0;
+    return map;
+  }
+
+  private static int shift (int index, int[] map) {
+    return (index == NONE) ? NONE : map[index];
+  }
+
+  private static int shift (int node, int offset) {
+    return (node == NONE) ? NONE : node + offset;
+  }
+
+  private int addToken (Token t) {
+    int index = t.GetStreamIndex();
+    if (nrTokens > 0 && (index >= 0 ? tokenIndexes[nrTokens - 1] == index
+                                    : tokenTable[nrTokens - 1] == t)) {
+       return nrTokens - 1;
+    }
+    if (nrTokens == tokenTable.length) {
+       growTokens(2 * nrTokens);
+    }
+    if (index >= 0) {
+       stream = t.GetStream();
+       tokenTable[nrTokens] = null;
+    } else {
+       tokenTable[nrTokens] = t;
+    }
+    tokenIndexes[nrTokens] = index;
+    tokenEdits[nrTokens] = nrEdits;
+    return nrTokens++;
+  }
+
+  private void growTokens (int capacity) {
+    tokenTable = java.util.Arrays.copyOf(tokenTable, capacity);
+    tokenIndexes = java.util.Arrays.copyOf(tokenIndexes, capacity);
+    tokenEdits = java.util.Arrays.copyOf(tokenEdits, capacity);
+  }
+
+  // Records an edit of the stream the tree was built from: stream is
+  // the edited one, and the tokens from oldEnd on have moved by shift.
+  // Tokens before oldEnd keep their index; the tree must not refer to
+  // tokens that the edit replaced.
+  public void moveTokens (TokenStream stream, int oldEnd, int shift) {
+    if (nrEdits == editEnds.length) {
+       editEnds = java.util.Arrays.copyOf(editEnds, 2 * nrEdits);
+       editShifts = java.util.Arrays.copyOf(editShifts, 2 * nrEdits);
+    }
+    editEnds[nrEdits] = oldEnd;
+    editShifts[nrEdits] = shift;
+    nrEdits++;
+    this.stream = stream;
+  }
+
+  // Brings entry t of the token table up to date with the edits and
+  // returns its index in the stream.
+  private int relocate (int t) {
+    int e = tokenEdits[t];
+    if (e < nrEdits) {
+       int i = tokenIndexes[t];
+       if (i >= 0) {
+          for (; e < nrEdits; e++) {
+             if (i >= editEnds[e]) {
+                i += editShifts[e];
+             }
+          }
+          tokenIndexes[t] = i;
+       }
+       tokenEdits[t] = nrEdits;
+    }
+    return tokenIndexes[t];
+  }
+
+  // entry t of the token table, in the current stream
+  private Token tableToken (int t) {
+    int i = relocate(t);
+    return (i >= 0) ? stream.token(i) : tokenTable[t];
+  }
+
+  // Drops all nodes created after node, which loses its children.
+  // For parsers that do not keep what they have parsed, so that the
+  // tree does not grow with the program.
+  public void truncate (int node) {
+    count = node + 1;
+    firstChild[node] = NONE;
+    lastChild[node] = NONE;
+    int used = 0;
+    for (int n = 0; n < count; n++) {
+       used = Math.max(used, Math.max(tokens[n], ends[n]) + 1);
+    }
+    java.util.Arrays.fill(tokenTable, used, nrTokens, null);
+    nrTokens = used;
+    dead = 0;
+  }
+
+  public void setRoot (int node) {
+    root = node;
+  }
+
+  public int root() {
+    return root;
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public int kind (int node) {
+    return kinds[node];
+  }
+
+  public int firstChild (int node) {
+    return firstChild[node];
+  }
+
+  public int nextSibling (int node) {
+    return nextSibling[node];
+  }
+
+  // The n-th child of node (from 0), or NONE.
+  public int child (int node, int n) {
+    int c = firstChild[node];
+    while (n > 0 && c != NONE) {
+       c = nextSibling[c];
+       n--;
+    }
+    return c;
+  }
+
+  public int nrChildren (int node) {
+    int n = 0;
+    for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+       n++;
+    }
+    return n;
+  }
+
+  public int tokenIndex (int node) {
+    return tokens[node];
+  }
+
+  // The token of node, or null.
+  public Token token (int node) {
+    int t = tokens[node];
+    return (t == NONE) ? null : tableToken(t);
+  }
+
+  // The closing token of node, or null.
+  public Token endToken (int node) {
+    int t = ends[node];
+    return (t == NONE) ? null : tableToken(t);
+  }
+
+  // Index of the token of node in the stream, or NONE.
+  public int streamIndex (int node) {
+    int t = tokens[node];
+    return (t == NONE) ? NONE : relocate(t);
+  }
+
+  // Index of the closing token of node in the stream, or NONE.
+  public int endIndex (int node) {
+    int t = ends[node];
+    return (t == NONE) ? NONE : relocate(t);
+  }
+
+  public static String spell (int kind) {
+    return kindTable[kind];
+  }
+
+  // Prints the subtree of node, one node per line, indented by depth
+  // and labelled with the name AstNode.role() gives it. An expression
+  // is printed on the line of its root, in prefix form with the
+  // operator first, such as (+ a (* b c)), so that its grouping shows
+  // and a long operand chain takes one line rather than one per
+  // operand. Long chains make deep trees, so this walks the tree with
+  // an explicit stack.
+  public void print (java.io.PrintStream out, int node) {
+    int[] nodes = new int[16];
+    int[] depths = new int[16];
+    int[] parents = new int[16];
+    int top = 0;
+
+    nodes[0] = node;
+    depths[0] = 0;
+    parents[0] = NONE;
+    top = 1;
+    while (top > 0) {
+       top--;
+       int n = nodes[top];
+       int depth = depths[top];
+       StringBuilder line = new StringBuilder();
+       for (int i = 0; i < depth; i++) {
+          line.append("  ");
+       }
+       String role = (parents[top] == NONE) ? null : AstNode.role(this, parents[top], n);
+       if (role != null) {
+          line.append(role).append(": ");
+       }
+       if (isExpr(kinds[n])) {
+          appendExpr(line, n);
+          out.println(line);
+          continue;
+       }
+       line.append(kindTable[kinds[n]]);
+       Token t = token(n);
+       if (t != null) {
+          line.append(" \"").append(t.GetLexeme()).append('"');
+       }
+       out.println(line);
+       // push the children in reverse, so the first one is printed next
+       int first = top;
+       for (int c = firstChild[n]; c != NONE; c = nextSibling[c]) {
+          if (top == nodes.length) {
+             nodes = java.util.Arrays.copyOf(nodes, 2 * top);
+             depths = java.util.Arrays.copyOf(depths, 2 * top);
+             parents = java.util.Arrays.copyOf(parents, 2 * top);
+          }
+          nodes[top] = c;
+          depths[top] = depth + 1;
+          parents[top] = n;
+          top++;
+       }
+       for (int i = first, j = top - 1; i < j; i++, j--) {
+          int swap = nodes[i];
+          nodes[i] = nodes[j];
+          nodes[j] = swap;
+       }
+    }
+  }
+
+  private static boolean isExpr (int kind) {
+    return kind >= BINARYEXPR && kind <= STRINGEXPR;
+  }
+
+  private static final int CLOSE = -2;	// appendExpr(): print ")"
+  private static final int SPACE = -3;	// appendExpr(): print " "
+
+  // Appends the expression at node in prefix form: (op left right),
+  // (op operand), (call f args...), ([] a index), and literals and
+  // names as they are, strings in quotes. An EMPTY operand, left by a
+  // missing one, is printed as "_".
+  private void appendExpr (StringBuilder line, int node) {
+    AstNode.BinaryExpr binary = new AstNode.BinaryExpr(this, NONE);
+    AstNode.UnaryExpr unary = new AstNode.UnaryExpr(this, NONE);
+    AstNode.Call call = new AstNode.Call(this, NONE);
+    int[] stack = new int[16];
+    int top = 0;
+
+    stack[top++] = node;
+    while (top > 0) {
+       int n = stack[--top];
+       if (n == CLOSE) {
+          line.append(')');
+          continue;
+       } else if (n == SPACE) {
+          line.append(' ');
+          continue;
+       }
+       if (top + 6 >= stack.length) {
+          stack = java.util.Arrays.copyOf(stack, 2 * stack.length);
+       }
+       switch (kinds[n]) {
+       case BINARYEXPR:
+          binary.at(n);
+          line.append('(').append(token(n).GetLexeme());
+          stack[top++] = CLOSE;
+          stack[top++] = binary.right();
+          stack[top++] = SPACE;
+          stack[top++] = binary.left();
+          stack[top++] = SPACE;
+          break;
+       case UNARYEXPR:
+          unary.at(n);
+          line.append('(').append(token(n).GetLexeme());
+          stack[top++] = CLOSE;
+          stack[top++] = unary.operand();
+          stack[top++] = SPACE;
+          break;
+       case CALLEXPR:
+       case ARRAYEXPR:
+          line.append((kinds[n] == CALLEXPR) ? "(call " : "([] ").append(token(n).GetLexeme());
+          int args = nrChildren(n);
+          while (top + 2 * args + 1 >= stack.length) {
+             stack = java.util.Arrays.copyOf(stack, 2 * stack.length);
+          }
+          stack[top++] = CLOSE;
+          // the arguments in reverse, so the first one is printed next
+          int first = top;
+          call.at(n);
+          int arg = (kinds[n] == CALLEXPR) ? call.firstArg() : firstChild[n];
+          for (int c = arg; c != NONE; c = nextSibling[c]) {
+             stack[top++] = SPACE;
+             stack[top++] = c;
+          }
+          for (int i = first, j = top - 1; i < j; i++, j--) {
+             int swap = stack[i];
+             stack[i] = stack[j];
+             stack[j] = swap;
+          }
+          break;
+       case EMPTY:
+          line.append('_');
+          break;
+       case STRINGEXPR:
+          line.append('"').append(token(n).GetLexeme()).append('"');
+          break;
+       default:
+          line.append(token(n).GetLexeme());
+       }
+    }
+  }
+
+}
@@ -0,0 +1,167 @@
+package MiniC.AstGen;
+
+import MiniC.Scanner.Token;
+
+// An AstNode is a view of one node of an Ast. Views hold no tree data
+// and can be moved to another node with at(), so a pass can walk the
+// whole tree with one view per node kind it looks at. The typed views
+// below name the children laid out in Ast; their accessors return node
+// numbers, which are Ast.NONE or an EMPTY node for absent parts.
+
+public class AstNode {
+
+  protected Ast ast;
+  protected int node;
+
+  public AstNode (Ast ast, int node) {
+    this.ast = ast;
+    this.node = node;
+  }
+
+  public AstNode at (int node) {
+    this.node = node;
+    return this;
+  }
+
+  public int id() {
+    return node;
+  }
+
+  public int kind() {
+    return ast.kind(node);
+  }
+
+  public Token token() {
+    return ast.token(node);
+  }
+
+  public int child (int n) {
+    return ast.child(node, n);
+  }
+
+  public int firstChild() {
+    return ast.firstChild(node);
+  }
+
+  public int nextSibling() {
+    return ast.nextSibling(node);
+  }
+
+  public boolean isEmpty() {
+    return ast.kind(node) == Ast.EMPTY;
+  }
+
+  // The name the typed view of parent gives to child, such as "type"
+  // or "body", or null if the view does not name it. Ast.print()
+  // labels the children with it.
+  public static String role (Ast ast, int parent, int child) {
+    switch (ast.kind(parent)) {
+    case Ast.FUNDECL:
+      FunDecl f = new FunDecl(ast, parent);
+      return name(child, f.type(), "type", f.params(), "params", f.body(), "body");
+    case Ast.VARDECL:
+    case Ast.PARAMDECL:
+      VarDecl v = new VarDecl(ast, parent);
+      return name(child, v.type(), "type", v.arraySize(), "size", v.initializer(), "init");
+    case Ast.IFSTMT:
+      IfStmt i = new IfStmt(ast, parent);
+      return name(child, i.condition(), "cond", i.thenPart(), "then", i.elsePart(), "else");
+    case Ast.WHILESTMT:
+      WhileStmt w = new WhileStmt(ast, parent);
+      return name(child, w.condition(), "cond", w.body(), "body", Ast.NONE, null);
+    case Ast.FORSTMT:
+      ForStmt l = new ForStmt(ast, parent);
+      String r = name(child, l.init(), "init", l.condition(), "cond", l.update(), "update");
+      return (r != null) ? r : name(child, l.body(), "body", Ast.NONE, null, Ast.NONE, null);
+    case Ast.ASSIGNSTMT:
+    case Ast.ARRAYASSIGNSTMT:
+      AssignStmt a = new AssignStmt(ast, parent);
+      return name(child, a.index(), "index", a.value(), "value", Ast.NONE, null);
+    case Ast.CALLSTMT:
+    case Ast.CALLEXPR:
+      return "arg";
+    default:
+      return null;
+    }
+  }
+
+  private static String name (int child, int c1, String n1, int c2, String n2, int c3, String n3) {
+    if (child == Ast.NONE) {
+      return null;
+    }
+    return (child == c1) ? n1 : (child == c2) ? n2 : (child == c3) ? n3 : null;
+  }
+
+  public static class FunDecl extends AstNode {
+    public FunDecl (Ast ast, int node) { super(ast, node); }
+    public Token name() { return token(); }
+    public int type() { return child(0); }
+    public int params() { return child(1); }
+    // a SKIPPEDBODY node after a skeleton parse, until the body is parsed
+    public int body() { return child(2); }
+  }
+
+  // Also used for PARAMDECL nodes, which have no initializer.
+  public static class VarDecl extends AstNode {
+    public VarDecl (Ast ast, int node) { super(ast, node); }
+    public Token name() { return token(); }
+    public int type() { return child(0); }
+    public int arraySize() { return child(1); }
+    public int initializer() { return child(2); }
+  }
+
+  public static class IfStmt extends AstNode {
+    public IfStmt (Ast ast, int node) { super(ast, node); }
+    public int condition() { return child(0); }
+    public int thenPart() { return child(1); }
+    // the statement after the first "else", or NONE
+    public int elsePart() { return child(2); }
+  }
+
+  public static class WhileStmt extends AstNode {
+    public WhileStmt (Ast ast, int node) { super(ast, node); }
+    public int condition() { return child(0); }
+    public int body() { return child(1); }
+  }
+
+  public static class ForStmt extends AstNode {
+    public ForStmt (Ast ast, int node) { super(ast, node); }
+    public int init() { return child(0); }
+    public int condition() { return child(1); }
+    public int update() { return child(2); }
+    public int body() { return child(3); }
+  }
+
+  // ASSIGNSTMT and ARRAYASSIGNSTMT
+  public static class AssignStmt extends AstNode {
+    public AssignStmt (Ast ast, int node) { super(ast, node); }
+    public Token name() { return token(); }
+    public int index() {
+      return (kind() == Ast.ARRAYASSIGNSTMT) ? child(0) : Ast.NONE;
+    }
+    public int value() {
+      return (kind() == Ast.ARRAYASSIGNSTMT) ? child(1) : child(0);
+    }
+  }
+
+  public static class BinaryExpr extends AstNode {
+    public BinaryExpr (Ast ast, int node) { super(ast, node); }
+    public int operator() { return token().kind; }
+    public int left() { return child(0); }
+    public int right() { return child(1); }
+  }
+
+  public static class UnaryExpr extends AstNode {
+    public UnaryExpr (Ast ast, int node) { super(ast, node); }
+    public int operator() { return token().kind; }
+    public int operand() { return child(0); }
+  }
+
+  // CALLEXPR and CALLSTMT; the arguments are the children.
+  public static class Call extends AstNode {
+    public Call (Ast ast, int node) { super(ast, node); }
+    public Token name() { return token(); }
+    public int firstArg() { return firstChild(); }
+  }
+
+}
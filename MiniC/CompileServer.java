@@ -0,0 +1,188 @@
+package MiniC;
+
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// CompileServer keeps the compiler in one long-lived JVM, so that its
+// code stays JIT-compiled from one compilation to the next, and
+// compiles files on request. Requests come over a Unix domain socket:
+// the client sends its working directory on one line and the name of
+// a source file, as it was given, on the next. The server opens the
+// name relative to that directory, and the client reads back what
+// compileProgram() prints for the name, followed by a last line
+// "exit n" with the exit status a direct run would have had, until
+// the server closes the connection. Requests are served concurrently;
+// each compilation has its own scanner, parser and error reporter, as
+// in batch mode.
+//
+// A client has to start quickly to gain anything from the server:
+// scripts/miniclient.c is one in C ("make client"), which takes about
+// a millisecond for a small file. --connect starts a JVM per request,
+// and is slower than compiling without the server.
+//
+// Every request has a deadline, and a request for a file supersedes
+// the one for the same file still in progress. A compilation that is
+// no longer wanted is cancelled by interrupting its thread; Scanner
+// and Parser check for that as they go and stop with a
+// CancellationException, and the client is told why.
+
+public class CompileServer {
+
+    private String socketPath;
+    private long deadline;	// in milliseconds from the arrival of a request
+    private java.util.concurrent.ExecutorService connections;
+    private java.util.concurrent.ExecutorService compilers;
+    // the compilation in progress for each file
+    private java.util.concurrent.ConcurrentHashMap<String, Future<MiniC.BatchResult>> pending =
+        new java.util.concurrent.ConcurrentHashMap<String, Future<MiniC.BatchResult>>();
+
+    public CompileServer(String socketPath, int threads, long deadline) {
+        this.socketPath = socketPath;
+        this.deadline = deadline;
+        connections = threadPerTask();
+        compilers = java.util.concurrent.Executors.newFixedThreadPool(threads);
+    }
+
+    // A virtual thread per connection where the JDK has them (Java 21
+    // on), a pooled platform thread otherwise. Connections mostly wait
+    // for their compilation, which runs on the compilers pool.
+    private static java.util.concurrent.ExecutorService threadPerTask() {
+        try {
+            return (java.util.concurrent.ExecutorService)
+                java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return java.util.concurrent.Executors.newCachedThreadPool();
+        }
+    }
+
+    // Serves requests until the JVM is stopped. A socket file left
+    // behind by an earlier server is replaced.
+    public void serve() throws java.io.IOException {
+        java.nio.file.Path path = java.nio.file.Paths.get(socketPath);
+        java.nio.file.Files.deleteIfExists(path);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        path.toFile().deleteOnExit();
+        while (true) {
+            final SocketChannel client = server.accept();
+            connections.execute(new Runnable() {
+                public void run() {
+                    handle(client);
+                }
+            });
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try {
+            java.io.BufferedReader in = new java.io.BufferedReader(
+                new java.io.InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+            String directory = in.readLine();
+            final String sourceName = in.readLine();
+            if (directory == null || sourceName == null) {
+                return;
+            }
+            final String path;
+            try {
+                path = java.nio.file.Paths.get(directory).resolve(sourceName).normalize().toString();
+            } catch (java.nio.file.InvalidPathException e) {
+                return;
+            }
+            Future<MiniC.BatchResult> compilation = compilers.submit(new Callable<MiniC.BatchResult>() {
+                public MiniC.BatchResult call() {
+                    return MiniC.compileToBuffer(path, sourceName);
+                }
+            });
+            Future<MiniC.BatchResult> superseded = pending.put(path, compilation);
+            if (superseded != null) {
+                superseded.cancel(true);
+            }
+            String reply = null;
+            byte[] output = null;
+            int status = 1;
+            try {
+                MiniC.BatchResult result = compilation.get(deadline, TimeUnit.MILLISECONDS);
+                output = result.output;
+                status = (result.result == MiniC.NOT_OPENED) ? 1 : 0;
+            } catch (TimeoutException e) {
+                compilation.cancel(true);
+                reply = "Compilation was cancelled: it took longer than " + deadline + " ms.";
+            } catch (CancellationException e) {
+                reply = "Compilation was cancelled: the file was sent again.";
+            } catch (ExecutionException e) {
+                reply = "Compilation failed: " + e.getCause();
+            } catch (InterruptedException e) {
+                compilation.cancel(true);
+                return;
+            } finally {
+                pending.remove(path, compilation);
+            }
+            if (reply != null) {
+                output = (reply + "\n").getBytes(StandardCharsets.UTF_8);
+            }
+            java.io.OutputStream out = Channels.newOutputStream(client);
+            out.write(output);
+            out.write(("exit " + status + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (java.io.IOException e) {
+            // the client has gone away; nothing to tell it
+        } finally {
+            try {
+                client.close();
+            } catch (java.io.IOException e) {
+            }
+        }
+    }
+
+    // Has the server listening at socketPath compile sourceName, and
+    // copies what it prints to out. Returns the exit status the server
+    // sent, or 1 if it sent none.
+    public static int request(String socketPath, String sourceName, java.io.PrintStream out)
+        throws java.io.IOException {
+        SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        try {
+            String lines = System.getProperty("user.dir") + "\n" + sourceName + "\n";
+            Channels.newOutputStream(channel).write(lines.getBytes(StandardCharsets.UTF_8));
+            channel.shutdownOutput();
+            java.io.InputStream in = Channels.newInputStream(channel);
+            java.io.ByteArrayOutputStream reply = new java.io.ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                reply.write(buffer, 0, n);
+            }
+            byte[] bytes = reply.toByteArray();
+            // the status is the last line
+            int last = bytes.length - 1;
+            while (last > 0 && bytes[last - 1] != '\n') {
+                last--;
+            }
+            String status = new String(bytes, Math.max(last, 0), bytes.length - Math.max(last, 0),
+                                       StandardCharsets.UTF_8).trim();
+            if (!status.startsWith("exit ")) {
+                out.write(bytes, 0, bytes.length);
+                out.flush();
+                return 1;
+            }
+            out.write(bytes, 0, last);
+            out.flush();
+            try {
+                return Integer.parseInt(status.substring(5));
+            } catch (NumberFormatException e) {
+                return 1;
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+package MiniC;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import MiniC.Scanner.ScannerContext;
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenSource;
+
+// CompileStats measures the phases of one compilation: the wall time
+// of each, and the bytes the compiling thread allocated in it (where
+// the JVM counts them per thread). A phase lasts from the end of the
+// previous one, or from the creation of the CompileStats, to
+// endPhase(). Work that other threads do for a phase counts towards
+// its time, not towards its allocation. Scanning that the parser asks
+// for token by token is told apart from parsing with timed(), which
+// scans a batch of tokens ahead at a time, as reading the clock for
+// every token would cost about as much as scanning it.
+//
+// The peak heap use is that of the whole process since it started:
+// the JVM keeps one peak per memory pool, so the peak of a single
+// compilation cannot be had while others run beside it.
+
+public class CompileStats {
+
+    private String sourceName;
+    private com.sun.management.ThreadMXBean threads;	// null if not available
+    private long mark;		// nanoTime at the end of the last phase
+    private long allocatedMark;
+
+    private java.util.ArrayList<String> names = new java.util.ArrayList<String>();
+    private java.util.ArrayList<long[]> phases = new java.util.ArrayList<long[]>();	// {nanos, tokens, bytes, allocated}
+
+    // number of tokens timed() scans ahead at a time
+    static final int BATCH = 256;
+
+    // what the scanner of scannerContext() prints, until timed() passes
+    // it on
+    private java.io.ByteArrayOutputStream printed = new java.io.ByteArrayOutputStream();
+
+    // what the scan() calls of the source from timed() took since the
+    // last phase
+    private long scanNanos;
+    private long scanAllocated;
+    private long scanTokens;
+
+    public CompileStats(String sourceName) {
+        this.sourceName = sourceName;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        allocatedMark = allocated();
+        mark = System.nanoTime();
+    }
+
+    // Ends a phase that went through the given numbers of tokens and
+    // source bytes, 0 if it is not about either.
+    public void endPhase(String name, long tokens, long bytes) {
+        long now = System.nanoTime();
+        long allocated = allocated();
+        names.add(name);
+        phases.add(new long[] {now - mark, tokens, bytes,
+                               (threads == null) ? -1 : allocated - allocatedMark});
+        allocatedMark = allocated();
+        mark = System.nanoTime();
+    }
+
+    // Ends two phases at once: scanned, the time spent in scan() of the
+    // source from timed() since the last phase, and rest, the time
+    // outside it, over the tokens scanned and the given source bytes.
+    public void endPhases(String scanned, String rest, long bytes) {
+        long now = System.nanoTime();
+        long allocated = allocated();
+        names.add(scanned);
+        phases.add(new long[] {scanNanos, scanTokens, bytes,
+                               (threads == null) ? -1 : scanAllocated});
+        names.add(rest);
+        phases.add(new long[] {now - mark - scanNanos, scanTokens, 0,
+                               (threads == null) ? -1 : allocated - allocatedMark - scanAllocated});
+        scanNanos = scanAllocated = scanTokens = 0;
+        allocatedMark = allocated();
+        mark = System.nanoTime();
+    }
+
+    // A context for the scanner behind the source of timed(), whose
+    // output timed() keeps back until it delivers the token it was
+    // printed for.
+    public ScannerContext scannerContext() {
+        return new ScannerContext(new java.io.PrintStream(printed, true));
+    }
+
+    // Returns a TokenSource that delivers the tokens of tokens, which
+    // prints to scannerContext(), and adds the time and allocation of
+    // its scan() calls to the next endPhases(). The tokens are taken
+    // BATCH at a time up to EOF, and what was printed with each is
+    // printed to out as it is delivered, so the output comes in the
+    // same order as without timed(). Tokens are counted up to EOF.
+    public TokenSource timed(final TokenSource tokens, final java.io.PrintStream out) {
+        return new TokenSource() {
+            private Token[] batch = new Token[BATCH];
+            private String[] output = new String[BATCH];	// printed with each token, or null
+            private int next, size;
+
+            public Token scan() {
+                if (next == size) {
+                    if (size > 0 && batch[size - 1].kind == Token.EOF) {
+                        return batch[size - 1];
+                    }
+                    fill();
+                }
+                if (output[next] != null) {
+                    out.print(output[next]);
+                }
+                return batch[next++];
+            }
+
+            private void fill() {
+                long start = System.nanoTime();
+                long allocatedStart = allocated();
+                size = 0;
+                while (size < BATCH) {
+                    Token token = tokens.scan();
+                    batch[size] = token;
+                    if (printed.size() > 0) {
+                        output[size] = printed.toString();
+                        printed.reset();
+                    } else {
+                        output[size] = null;
+                    }
+                    size++;
+                    if (token.kind == Token.EOF) {
+                        break;
+                    }
+                }
+                scanAllocated += allocated() - allocatedStart;
+                scanNanos += System.nanoTime() - start;
+                scanTokens += size;
+                next = 0;
+            }
+        };
+    }
+
+    private long allocated() {
+        return (threads == null) ? -1 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    // The sum of the peaks of the heap memory pools since the process
+    // started, an upper bound of its peak heap use.
+    static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private long total(int field) {
+        long sum = 0;
+        for (long[] phase : phases) {
+            sum += phase[field];
+        }
+        return sum;
+    }
+
+    private long maximum(int field) {
+        long max = 0;
+        for (long[] phase : phases) {
+            max = Math.max(max, phase[field]);
+        }
+        return max;
+    }
+
+    private static double perSecond(long amount, long nanos) {
+        return (nanos == 0) ? 0 : amount * 1e9 / nanos;
+    }
+
+    private static String format(String pattern, Object... args) {
+        return String.format(java.util.Locale.ROOT, pattern, args);
+    }
+
+    // Prints a table of the phases: time, tokens and bytes per second,
+    // and bytes allocated per token.
+    public void print(java.io.PrintStream out) {
+        out.println("Statistics for " + sourceName + ":");
+        out.println(format("  %-10s %10s %14s %12s %12s", "phase", "ms", "tokens/s", "MB/s", "bytes/token"));
+        for (int i = 0; i < phases.size(); i++) {
+            long[] phase = phases.get(i);
+            StringBuilder line = new StringBuilder(format("  %-10s %10.3f", names.get(i), phase[0] / 1e6));
+            if (phase[1] > 0) {
+                line.append(format(" %14.0f", perSecond(phase[1], phase[0])));
+            } else {
+                line.append(format(" %14s", "-"));
+            }
+            if (phase[2] > 0) {
+                line.append(format(" %12.1f", perSecond(phase[2], phase[0]) / 1e6));
+            } else {
+                line.append(format(" %12s", "-"));
+            }
+            if (phase[1] > 0 && phase[3] >= 0) {
+                line.append(format(" %12.1f", (double) phase[3] / phase[1]));
+            }
+            out.println(line);
+        }
+        out.println(format("  %-10s %10.3f", "total", total(0) / 1e6));
+        out.println(format("  %d tokens, %d bytes, process peak heap %.1f MB", maximum(1), maximum(2), peakHeap() / 1e6));
+    }
+
+    // Prints the same numbers as one line of JSON.
+    public void printJson(java.io.PrintStream out) {
+        long tokens = maximum(1);
+        long allocated = (threads == null) ? -1 : total(3);
+        StringBuilder json = new StringBuilder("{\"file\":").append(quote(sourceName)).append(",\"phases\":[");
+        for (int i = 0; i < phases.size(); i++) {
+            long[] phase = phases.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":").append(quote(names.get(i)))
+                .append(format(",\"ms\":%.3f,\"tokens\":%d,\"bytes\":%d,\"allocatedBytes\":%d}",
+                               phase[0] / 1e6, phase[1], phase[2], phase[3]));
+        }
+        json.append(format("],\"totalMs\":%.3f,\"tokens\":%d,\"bytes\":%d", total(0) / 1e6, tokens, maximum(2)));
+        json.append(format(",\"tokensPerSecond\":%.0f", perSecond(tokens, total(0))));
+        json.append(format(",\"bytesPerSecond\":%.0f", perSecond(maximum(2), total(0))));
+        json.append(format(",\"processPeakHeapBytes\":%d", peakHeap()));
+        if (allocated >= 0 && tokens > 0) {
+            json.append(format(",\"allocatedBytesPerToken\":%.1f", (double) allocated / tokens));
+        } else {
+            json.append(",\"allocatedBytesPerToken\":null");
+        }
+        out.println(json.append('}'));
+    }
+
+    private static String quote(String s) {
+        StringBuilder q = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                q.append('\\').append(c);
+            } else if (c < 0x20) {
+                q.append(format("\\u%04x", (int) c));
+            } else {
+                q.append(c);
+            }
+        }
+        return q.append('"').toString();
+    }
+
+}
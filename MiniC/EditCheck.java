@@ -0,0 +1,304 @@
+package MiniC;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import MiniC.AstGen.Ast;
+import MiniC.Parser.Parser;
+import MiniC.Scanner.IncrementalScanner;
+import MiniC.Scanner.Scanner;
+import MiniC.Scanner.ScannerContext;
+import MiniC.Scanner.SourceFile;
+import MiniC.Scanner.SourceInput;
+import MiniC.Scanner.SourcePos;
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenStream;
+
+// EditCheck applies a series of random edits to a source file and
+// checks after every edit that what is kept up to date incrementally
+// is what a fresh start on the edited text gives. The edits come from
+// a Random with a fixed seed, so a failing series can be repeated.
+// The inserted pieces are chosen to open and close comments, strings
+// and blocks and to split and join tokens.
+
+public class EditCheck {
+
+    private static final String[] PIECES = {
+        "", " ", "\n", "\t", "x", "int", "1", "1.5e+3", "e", "+", "=", "==",
+        "/*", "*/", "//", "\"", "\\", "ab\"cd", "{", "}", "(", ")", ";", "\u00e9"
+    };
+
+    // pieces of statements, for edits inside blocks
+    private static final String[] STATEMENTS = {
+        "", " ", ";", "x = 1;", "y[2] = x;", "f(x);", "return;", "int k;",
+        "if (x) ", "else ", "while (y) ", "{", "}", "{ x = 2; }", "(", ")", "x"
+    };
+
+    private byte[] text;
+    private java.util.Random random;
+
+    EditCheck (byte[] text, long seed) {
+        this.text = text;
+        random = new java.util.Random(seed);
+    }
+
+    // The next random edit, as {offset, removed} and the bytes to
+    // insert, and in inserted[1] if there is room the bytes removed;
+    // the text is edited to match.
+    private int[] nextEdit (byte[][] inserted) {
+        int offset = random.nextInt(text.length + 1);
+        int removed = Math.min(random.nextInt(7), text.length - offset);
+        inserted[0] = PIECES[random.nextInt(PIECES.length)].getBytes(StandardCharsets.UTF_8);
+        byte[] old = apply(offset, removed, inserted[0]);
+        if (inserted.length > 1) {
+            inserted[1] = old;
+        }
+        return new int[] {offset, removed};
+    }
+
+    // A random edit at a token boundary inside a block nested in
+    // another block, if tokens has one, as for nextEdit(). It removes
+    // whole tokens.
+    private int[] nextEditInBlock (TokenStream tokens, byte[][] inserted) {
+        java.util.ArrayList<Integer> indexes = new java.util.ArrayList<Integer>();
+        int depth = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.kind(i) == Token.RIGHTBRACE) {
+                depth--;
+            }
+            if (depth >= 2) {
+                indexes.add(i);
+            }
+            if (tokens.kind(i) == Token.LEFTBRACE) {
+                depth++;
+            }
+        }
+        if (indexes.isEmpty()) {
+            return nextEdit(inserted);
+        }
+        int i = indexes.get(random.nextInt(indexes.size()));
+        int end = Math.min(i + random.nextInt(4), tokens.size() - 1);
+        int offset = tokens.start(i);
+        int removed = tokens.start(end) - offset;
+        inserted[0] = STATEMENTS[random.nextInt(STATEMENTS.length)].getBytes(StandardCharsets.UTF_8);
+        inserted[1] = apply(offset, removed, inserted[0]);
+        return new int[] {offset, removed};
+    }
+
+    // Replaces removed bytes of the text at offset by inserted, and
+    // returns the bytes removed.
+    private byte[] apply (int offset, int removed, byte[] inserted) {
+        byte[] old = java.util.Arrays.copyOfRange(text, offset, offset + removed);
+        byte[] edited = new byte[text.length - removed + inserted.length];
+        System.arraycopy(text, 0, edited, 0, offset);
+        System.arraycopy(inserted, 0, edited, offset, inserted.length);
+        System.arraycopy(text, offset + removed, edited, offset + inserted.length,
+                         text.length - offset - removed);
+        text = edited;
+        return old;
+    }
+
+    // A fresh scan of the current text, with the scanner's messages
+    // kept in the stream.
+    private TokenStream scan() {
+        final byte[] bytes = text;
+        SourceFile source = new SourceFile("edited", new SourceInput() {
+            public ByteBuffer load(java.io.File file) {
+                return ByteBuffer.wrap(bytes);
+            }
+        });
+        return new Scanner(source).recordAll();
+    }
+
+    // Makes edits random edits of sourceName with IncrementalScanner and
+    // compares its stream with a fresh scan after each: token kinds,
+    // offsets and positions, and the scanner's messages. Prints the
+    // first difference, or that there was none, and returns whether
+    // there was none.
+    static boolean checkScanner (String sourceName, int edits, java.io.PrintStream out) {
+        SourceFile source = new SourceFile(sourceName);
+        if (!source.isOpen()) {
+            out.println("Error opening file " + sourceName);
+            return false;
+        }
+        ByteBuffer buffer = source.getBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        EditCheck check = new EditCheck(bytes, edits);
+        IncrementalScanner scanner = new IncrementalScanner(check.scan(), new ScannerContext(out));
+        byte[][] inserted = new byte[1][];
+        for (int e = 1; e <= edits; e++) {
+            int[] edit = check.nextEdit(inserted);
+            TokenStream edited = scanner.edit(edit[0], edit[1], inserted[0]);
+            String difference = difference(edited, check.scan());
+            if (difference != null) {
+                out.println("Edit " + e + " (offset " + edit[0] + ", " + edit[1] + " bytes removed, "
+                            + quote(inserted[0]) + " inserted): " + difference);
+                return false;
+            }
+        }
+        out.println("The incremental scan agrees with a full scan after each of " + edits + " edits.");
+        return true;
+    }
+
+    // Makes edits random edits of sourceName inside nested blocks and
+    // brings the tree of a parse up to date with Parser.reparse() after
+    // each. The tree is compared with that of a full parse of the
+    // edited text, node by node: kind, children and tokens; so are the
+    // errors reparse() reports, with all those of the full parse. An
+    // edit that makes the text wrong is undone by the next one, so
+    // that most edits are made to a program that parses. Both parse
+    // with an explicit stack if explicitStack is set. Prints the first
+    // difference, or that there was none, and returns whether there
+    // was none.
+    static boolean checkReparse (String sourceName, int edits, boolean explicitStack,
+                                 java.io.PrintStream out) {
+        SourceFile source = new SourceFile(sourceName);
+        if (!source.isOpen()) {
+            out.println("Error opening file " + sourceName);
+            return false;
+        }
+        ByteBuffer buffer = source.getBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        EditCheck check = new EditCheck(bytes, edits);
+        java.io.ByteArrayOutputStream reparseErrors = new java.io.ByteArrayOutputStream();
+        java.io.ByteArrayOutputStream fullErrors = new java.io.ByteArrayOutputStream();
+        java.io.PrintStream discard = new java.io.PrintStream(new java.io.ByteArrayOutputStream() {
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        IncrementalScanner scanner = new IncrementalScanner(check.scan(), new ScannerContext(discard));
+        Parser parser = new Parser(scanner.getTokens().reader(),
+                                   new ErrorReporter(new java.io.PrintStream(reparseErrors)));
+        if (explicitStack) {
+            parser.enableExplicitStack();
+        }
+        parser.parse();
+        int inBlock = 0;
+        int undone = 0;
+        int[] undo = null;
+        byte[][] inserted = new byte[2][];
+        for (int e = 1; e <= edits; e++) {
+            int[] edit;
+            if (undo != null) {
+                edit = new int[] {undo[0], undo[1]};
+                check.apply(undo[0], undo[1], inserted[0]);
+                undone++;
+            } else {
+                edit = check.nextEditInBlock(scanner.getTokens(), inserted);
+            }
+            TokenStream edited = scanner.edit(edit[0], edit[1], inserted[0]);
+            reparseErrors.reset();
+            int node = parser.reparse(edited, scanner.firstChanged(), scanner.oldChangedEnd(),
+                                      scanner.newChangedEnd());
+            if (node != parser.getAst().root()) {
+                inBlock++;
+            }
+            fullErrors.reset();
+            Parser full = new Parser(check.scan().reader(),
+                                     new ErrorReporter(new java.io.PrintStream(fullErrors)));
+            if (explicitStack) {
+                full.enableExplicitStack();
+            }
+            full.parse();
+            String difference = difference(parser.getAst(), parser.getAst().root(), full.getAst(), full.getAst().root());
+            if (difference == null && !reparseErrors.toString().equals(fullErrors.toString())) {
+                difference = "reparse() reported\n" + reparseErrors + "instead of\n" + fullErrors;
+            }
+            if (difference != null) {
+                out.println("Edit " + e + " (offset " + edit[0] + ", " + edit[1] + " bytes removed, "
+                            + quote(inserted[0]) + " inserted): " + difference);
+                return false;
+            }
+            if (undo == null && fullErrors.size() > 0) {
+                undo = new int[] {edit[0], inserted[0].length};
+                inserted[0] = inserted[1];
+            } else {
+                undo = null;
+            }
+        }
+        out.println("The reparsed tree agrees with a full parse after each of " + edits + " edits.");
+        out.println(inBlock + " edits were reparsed within a block, " + undone + " edits undid the one before.");
+        return true;
+    }
+
+    // The first difference between the subtree of a at n and that of b
+    // at m, walked in preorder with an explicit stack, or null.
+    static String difference (Ast a, int n, Ast b, int m) {
+        int[] stack = new int[32];
+        int top = 0;
+        stack[top++] = n;
+        stack[top++] = m;
+        while (top > 0) {
+            m = stack[--top];
+            n = stack[--top];
+            if (a.kind(n) != b.kind(m) || a.nrChildren(n) != b.nrChildren(m)
+                || a.streamIndex(n) != b.streamIndex(m) || a.endIndex(n) != b.endIndex(m)) {
+                return "node " + Ast.spell(a.kind(n)) + " at token " + a.streamIndex(n) + " with "
+                    + a.nrChildren(n) + " children instead of " + Ast.spell(b.kind(m)) + " at token "
+                    + b.streamIndex(m) + " with " + b.nrChildren(m) + " children";
+            }
+            Token t = a.token(n);
+            Token u = b.token(m);
+            if (t != null && !t.GetLexeme().equals(u.GetLexeme())) {
+                return "node " + Ast.spell(a.kind(n)) + " at token " + a.streamIndex(n) + " has token \""
+                    + t.GetLexeme() + "\" instead of \"" + u.GetLexeme() + "\"";
+            }
+            for (int c = a.firstChild(n), d = b.firstChild(m); c != Ast.NONE;
+                 c = a.nextSibling(c), d = b.nextSibling(d)) {
+                if (top + 2 > stack.length) {
+                    stack = java.util.Arrays.copyOf(stack, 2 * stack.length);
+                }
+                stack[top++] = c;
+                stack[top++] = d;
+            }
+        }
+        return null;
+    }
+
+    // The first difference between the tokens and messages of a and b,
+    // or null.
+    private static String difference (TokenStream a, TokenStream b) {
+        int n = Math.min(a.size(), b.size());
+        for (int i = 0; i < n; i++) {
+            if (a.kind(i) != b.kind(i) || a.start(i) != b.start(i) || a.length(i) != b.length(i)) {
+                return "token " + i + " is " + describe(a, i) + " instead of " + describe(b, i);
+            }
+            SourcePos p = a.sourcePos(i);
+            SourcePos q = b.sourcePos(i);
+            if (p.StartLine != q.StartLine || p.StartCol != q.StartCol
+                || p.EndLine != q.EndLine || p.EndCol != q.EndCol) {
+                return "token " + i + " is at " + position(p) + " instead of " + position(q);
+            }
+        }
+        if (a.size() != b.size()) {
+            return a.size() + " tokens instead of " + b.size();
+        }
+        int m = Math.min(a.nrMessages(), b.nrMessages());
+        for (int i = 0; i < m; i++) {
+            if (a.messageToken(i) != b.messageToken(i) || !a.message(i).equals(b.message(i))) {
+                return "message " + i + " is \"" + a.message(i) + "\" at token " + a.messageToken(i)
+                    + " instead of \"" + b.message(i) + "\" at token " + b.messageToken(i);
+            }
+        }
+        if (a.nrMessages() != b.nrMessages()) {
+            return a.nrMessages() + " messages instead of " + b.nrMessages();
+        }
+        return null;
+    }
+
+    private static String describe (TokenStream tokens, int i) {
+        return "kind " + tokens.kind(i) + " at " + tokens.start(i) + "+" + tokens.length(i);
+    }
+
+    private static String position (SourcePos pos) {
+        return pos.StartLine + ":" + pos.StartCol + "-" + pos.EndLine + ":" + pos.EndCol;
+    }
+
+    private static String quote (byte[] bytes) {
+        String s = new String(bytes, StandardCharsets.UTF_8);
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\t", "\\t") + "\"";
+    }
+
+}
@@ -5,23 +5,63 @@ import MiniC.Scanner.SourcePos;
 public class ErrorReporter {
 
   int numErrors;
+  private java.io.PrintStream out;
+  // messages of a reporter made by hold(), kept until release()
+  private java.util.ArrayList<String> heldMessages;
+  private java.util.ArrayList<String> heldTokens;
+  private java.util.ArrayList<SourcePos> heldPositions;
 
-  ErrorReporter()
+  public ErrorReporter()
+  {
+    this(System.out);
+  }
+
+  // A reporter that prints its messages to out.
+  public ErrorReporter(java.io.PrintStream out)
   {
     numErrors = 0;
+    this.out = out;
+  }
+
+  // Returns a reporter that keeps its messages back until they are
+  // passed on to this one with release(), so that work done ahead of
+  // time can report its errors in source order.
+  public ErrorReporter hold() {
+    ErrorReporter r = new ErrorReporter();
+    r.heldMessages = new java.util.ArrayList<String>();
+    r.heldTokens = new java.util.ArrayList<String>();
+    r.heldPositions = new java.util.ArrayList<SourcePos>();
+    return r;
+  }
+
+  // Reports the messages held by r, in the order r got them.
+  public void release(ErrorReporter r) {
+    for (int i = 0; i < r.heldMessages.size(); i++) {
+      reportError(r.heldMessages.get(i), r.heldTokens.get(i), r.heldPositions.get(i));
+    }
+    r.heldMessages.clear();
+    r.heldTokens.clear();
+    r.heldPositions.clear();
   }
 
   public void reportError(String message, String tokenName, SourcePos pos) {
-    System.out.print ("ERROR: ");
+    if (heldMessages != null) {
+      heldMessages.add(message);
+      heldTokens.add(tokenName);
+      heldPositions.add(pos);
+      numErrors++;
+      return;
+    }
+    out.print ("ERROR: ");
 
     for (int c = 0; c < message.length(); c++) {
         if (message.charAt(c) == '%') {
-	    System.out.print(tokenName);
+	    out.print(tokenName);
 	} else {
-	    System.out.print(message.charAt(c));
+	    out.print(message.charAt(c));
 	}
     }
-    System.out.println(" " + pos.StartCol + ".." + pos.EndCol + ", line " + pos.StartLine + ".");
+    out.println(" " + pos.StartCol + ".." + pos.EndCol + ", line " + pos.StartLine + ".");
     numErrors++;
   }
 
@@ -1,39 +1,480 @@
 package MiniC;
 
+import MiniC.Scanner.ParallelScanner;
+import MiniC.Scanner.PipelinedScanner;
+import MiniC.Scanner.ReplayScanner;
 import MiniC.Scanner.Scanner;
+import MiniC.Scanner.ScannerContext;
 import MiniC.Scanner.SourceFile;
+import MiniC.Scanner.SourcePos;
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenBuffer;
+import MiniC.Scanner.TokenDump;
+import MiniC.Scanner.TokenSource;
+import MiniC.Scanner.TokenStream;
+import MiniC.AstGen.Ast;
+import MiniC.Parser.LL1Parser;
+import MiniC.Parser.ParseAdapter;
+import MiniC.Parser.ParseListener;
 import MiniC.Parser.Parser;
 
 public class MiniC{
 
-    private static Scanner scanner;
-    private static Parser parser;
-    private static ErrorReporter reporter;
+    private static boolean explicitStack;
+    private static boolean tableDriven;
+    private static boolean parallel;
+    private static boolean pipelined;
+    private static int chunkSize = ParallelScanner.DEFAULT_CHUNK_SIZE;	// --chunk-size
+    private static boolean printTree;	// --ast
+    private static String statistics;	// "text" or "json" with --stats
 
-    static void compileProgram (String sourceName) {
+    // results of compileProgram()
+    static final int SUCCESSFUL = 0;
+    static final int UNSUCCESSFUL = 1;	// there were errors in the source
+    static final int NOT_OPENED = 2;	// the source could not be read
+
+    // Compiles one file and prints what the compiler has to say to
+    // out. Returns one of the results above. Every call works with its
+    // own scanner, parser and error reporter, so several files can be
+    // compiled at once on different threads.
+    static int compileProgram (String sourceName, java.io.PrintStream out) {
+        return compileProgram(sourceName, sourceName, out);
+    }
+
+    // The same for the file at path, which is called sourceName in
+    // what is printed. The compile server opens files relative to the
+    // directory of its client, and names them as the client did.
+    static int compileProgram (String path, String sourceName, java.io.PrintStream out) {
+
+        out.println("********** " +
+                    "MiniC Compiler" +
+                    " **********");
+
+        out.println("Syntax Analysis ...");
+        CompileStats stats = (statistics == null) ? null : new CompileStats(sourceName);
+        SourceFile source = new SourceFile(path);
+
+        if (!source.isOpen()) {
+            out.println("Error opening file " + sourceName);
+            return NOT_OPENED;
+        }
+
+        if (stats != null) {
+            return result(compileWithStats(source, stats, out));
+        }
+        if (parallel) {
+            // scan the whole file first, so that the parser can hand
+            // out function bodies to other threads
+            return result(parseTokens(new ParallelScanner(source, new ScannerContext(out), chunkSize).scanAll().reader(), out));
+        }
+        if (pipelined) {
+            // scan on another thread while the parser reads the tokens
+            PipelinedScanner tokens = new PipelinedScanner(source, new ScannerContext(out)).start();
+            try {
+                return result(parseTokens(tokens, out));
+            } finally {
+                tokens.close();
+            }
+        }
+        Scanner scanner  = new Scanner(source, new ScannerContext(out));
+        /*
+         * Enable this to observe the sequence of tokens
+         * delivered by the scanner:
+         *
+         */
+        //scanner.enableDebugging();
+        return result(parseTokens(scanner, out));
+    }
+
+    private static int result (boolean successful) {
+        return successful ? SUCCESSFUL : UNSUCCESSFUL;
+    }
+
+    // The rest of compileProgram() with --stats. Scanning is timed a
+    // batch of tokens at a time as the parser needs them, with the
+    // scanner's messages kept back until their tokens are parsed, so
+    // that they come out in the same order as without --stats. With
+    // --parallel the file is scanned first anyway, and with --pipelined
+    // the scanning phase is the time the parser waited for the scanner
+    // thread. The allocation figures with --pipelined cover only the
+    // parsing thread, as what the scanner thread allocates is not
+    // counted; the peak heap is still that of the whole process.
+    private static boolean compileWithStats (SourceFile source, CompileStats stats,
+                                             java.io.PrintStream out) {
+        long bytes = source.getBuffer().limit();
+        stats.endPhase("open", 0, bytes);
+        boolean successful;
+        if (parallel) {
+            TokenStream tokens = new ParallelScanner(source, new ScannerContext(out), chunkSize).scanAll();
+            stats.endPhase("scanning", tokens.size(), bytes);
+            successful = parseTokens(tokens.reader(), out);
+            stats.endPhase("parsing", tokens.size(), 0);
+        } else if (pipelined) {
+            PipelinedScanner tokens = new PipelinedScanner(source, stats.scannerContext()).start();
+            try {
+                successful = parseTokens(stats.timed(tokens, out), out);
+            } finally {
+                tokens.close();
+            }
+            stats.endPhases("scan wait", "parsing", bytes);
+        } else {
+            successful = parseTokens(stats.timed(new Scanner(source, stats.scannerContext()), out), out);
+            stats.endPhases("scanning", "parsing", bytes);
+        }
+        if (statistics.equals("json")) {
+            stats.printJson(out);
+        } else {
+            stats.print(out);
+        }
+        return successful;
+    }
+
+    // Parses a token stream recorded with --dump-tokens, without
+    // scanning the source again.
+    static void replayProgram (String dumpName) {
 
         System.out.println("********** " +
                            "MiniC Compiler" +
                            " **********");
 
         System.out.println("Syntax Analysis ...");
+        ReplayScanner replay = null;
+        try {
+            replay = new ReplayScanner(dumpName);
+        } catch (java.io.IOException e) {
+            System.out.println("Error reading token dump " + dumpName);
+            System.exit(1);
+        }
+        parseTokens(replay, System.out);
+    }
+
+    static void dumpTokens (String sourceName, String dumpName) {
         SourceFile source = new SourceFile(sourceName);
+        if (!source.isOpen()) {
+            System.out.println("Error opening file " + sourceName);
+            System.exit(1);
+        }
+        try {
+            TokenDump.write(new Scanner(source).recordAll(), dumpName);
+        } catch (java.io.IOException e) {
+            System.out.println("Error writing token dump " + dumpName);
+            System.exit(1);
+        }
+    }
 
-        if (source == null) {
+    // Compares the tokens recorded in a dump with a fresh scan of a
+    // file, as a regression check of the scanner: a dump made with one
+    // version is compared with the scan of another. Prints the first
+    // token that differs, and returns whether there was none.
+    static boolean diffTokens (String dumpName, String sourceName) {
+        TokenStream recorded = null;
+        try {
+            recorded = TokenDump.read(dumpName);
+        } catch (java.io.IOException e) {
+            System.out.println("Error reading token dump " + dumpName);
+            System.exit(1);
+        }
+        SourceFile source = new SourceFile(sourceName);
+        if (!source.isOpen()) {
             System.out.println("Error opening file " + sourceName);
             System.exit(1);
         }
+        TokenStream scanned = new Scanner(source).recordAll();
+        int i = TokenDump.firstDifference(recorded, scanned);
+        if (i < 0) {
+            System.out.println("The " + scanned.size() + " tokens agree.");
+            return true;
+        }
+        System.out.println("The tokens differ at token " + (i + 1) + ":");
+        System.out.println("  " + dumpName + ": " + describe(recorded, i));
+        System.out.println("  " + sourceName + ": " + describe(scanned, i));
+        return false;
+    }
 
-        scanner  = new Scanner(source);
-        /*
-         * Enable this to observe the sequence of tokens
-         * delivered by the scanner:
-         *
-         */
-        //scanner.enableDebugging();
-        reporter = new ErrorReporter();
-        parser   = new Parser(scanner, reporter);
-        parser.parse();	    // 1st pass
+    private static String describe (TokenStream tokens, int i) {
+        if (i >= tokens.size()) {
+            return "no more tokens";
+        }
+        Token t = tokens.token(i);
+        SourcePos pos = t.GetSourcePos();
+        return Token.spell(t.kind) + " \"" + t.GetLexeme() + "\" (" + pos.StartLine + ":" + pos.StartCol + ")";
+    }
+
+    // Lists the toplevel declarations of a file, one per line, as a
+    // ParseListener hears about them. The parse is a skeleton one that
+    // does not look into function bodies, and keeps no tree. A
+    // declaration with a syntax error may be listed in part.
+    static void listDeclarations (String sourceName) {
+        ParseAdapter lister = new ParseAdapter() {
+            StringBuilder line;	// the declaration heard last
+            int params = -1;	// parameters seen, or -1 outside of a function
+
+            public void enterFunction(Token type, Token name) {
+                print();
+                line = new StringBuilder(type.GetLexeme()).append(' ')
+                    .append(name.GetLexeme()).append('(');
+                params = 0;
+            }
+
+            public void exitFunction(Token name) {
+                line.append(')');
+                print();
+                params = -1;
+            }
+
+            public void onDeclarator(int kind, Token type, Token name) {
+                if (kind == Ast.PARAMDECL) {
+                    line.append(params++ == 0 ? "" : ", ");
+                } else if (params < 0) {
+                    // a variable, printed once its size is known
+                    print();
+                    line = new StringBuilder();
+                } else {
+                    return;
+                }
+                line.append(type.GetLexeme()).append(' ').append(name.GetLexeme());
+            }
+
+            public void onArraySize(Token size) {
+                if (line != null) {
+                    line.append('[').append(size.GetLexeme()).append(']');
+                }
+            }
+
+            public void exitProgram() {
+                print();
+            }
+
+            void print() {
+                if (line != null) {
+                    System.out.println(line);
+                    line = null;
+                }
+            }
+        };
+        listen(sourceName, lister, true);
+    }
+
+    // Prints the events a ParseListener hears while a file is parsed,
+    // one per line, with the line and column of their token.
+    static void listEvents (String sourceName) {
+        listen(sourceName, new ParseListener() {
+            public void enterFunction(Token type, Token name) {
+                print("enterFunction", type.GetLexeme() + " " + name.GetLexeme(), name);
+            }
+
+            public void exitFunction(Token name) {
+                print("exitFunction", name.GetLexeme(), name);
+            }
+
+            public void onDeclarator(int kind, Token type, Token name) {
+                print("onDeclarator", Ast.spell(kind) + " " + type.GetLexeme() + " " + name.GetLexeme(), name);
+            }
+
+            public void onArraySize(Token size) {
+                print("onArraySize", size.GetLexeme(), size);
+            }
+
+            public void enterStmt(int kind, Token token) {
+                print("enterStmt", Ast.spell(kind) + " " + token.GetLexeme(), token);
+            }
+
+            public void onExpr(int kind, Token token) {
+                print("onExpr", Ast.spell(kind) + " " + token.GetLexeme(), token);
+            }
+
+            public void exitProgram() {
+                System.out.println("exitProgram");
+            }
+
+            void print(String event, String what, Token t) {
+                SourcePos pos = t.GetSourcePos();
+                System.out.println(event + " " + what + " (" + pos.StartLine + ":" + pos.StartCol + ")");
+            }
+        }, false);
+    }
+
+    // Prints every token of a file as a TokenBuffer with three tokens
+    // of lookahead delivers it, followed by the tokens peek() sees
+    // after it. At every "(" a trial read to the matching ")" is made
+    // between mark() and reset(), as a trial parse would, and the
+    // number of tokens it read is printed; the lines after it show
+    // that reading goes on right after the "(" again.
+    static void listLookahead (String sourceName) {
+        SourceFile source = new SourceFile(sourceName);
+        if (!source.isOpen()) {
+            System.out.println("Error opening file " + sourceName);
+            System.exit(1);
+        }
+        TokenBuffer tokens = new TokenBuffer(new Scanner(source), 3);
+        Token t;
+        do {
+            t = tokens.consume();
+            StringBuilder line = new StringBuilder(t.GetLexeme()).append(" :");
+            for (int k = 1; k <= 3; k++) {
+                line.append(' ').append(tokens.peek(k).GetLexeme());
+            }
+            System.out.println(line);
+            if (t.kind == Token.LEFTPAREN) {
+                tokens.mark();
+                int depth = 1;
+                int read = 0;
+                while (depth > 0 && tokens.peekKind(1) != Token.EOF) {
+                    int kind = tokens.consume().kind;
+                    read++;
+                    if (kind == Token.LEFTPAREN) {
+                        depth++;
+                    } else if (kind == Token.RIGHTPAREN) {
+                        depth--;
+                    }
+                }
+                tokens.reset();
+                System.out.println("  trial read " + read + " tokens"
+                                   + (depth > 0 ? ", no matching )" : " to the matching )"));
+            }
+        } while (t.kind != Token.EOF);
+    }
+
+    // Makes a skeleton parse of a file and then parses the body of the
+    // function called name with parseFunctionBody(). Prints the errors
+    // of both and the tree of the body, and compares the body and its
+    // errors with what a full parse has for it: the same subtree, and
+    // the errors reported from its "{" to its "}". Returns whether they
+    // agree.
+    static boolean showBody (String name, String sourceName) {
+        SourceFile source = new SourceFile(sourceName);
+        if (!source.isOpen()) {
+            System.out.println("Error opening file " + sourceName);
+            return false;
+        }
+        TokenStream tokens = new Scanner(source).scanAll();
+        java.io.ByteArrayOutputStream errors = new java.io.ByteArrayOutputStream();
+        Parser parser = new Parser(tokens.reader(), new ErrorReporter(new java.io.PrintStream(errors)));
+        if (explicitStack) {
+            parser.enableExplicitStack();
+        }
+        parser.enableSkeleton();
+        parser.parse();
+        System.out.println("Skeleton:");
+        System.out.print(errors);
+        Ast ast = parser.getAst();
+        int fun = Ast.NONE;
+        for (int n = ast.firstChild(ast.root()); n != Ast.NONE; n = ast.nextSibling(n)) {
+            if (ast.kind(n) == Ast.FUNDECL && ast.token(n).GetLexeme().equals(name)) {
+                fun = n;
+                break;
+            }
+        }
+        if (fun == Ast.NONE) {
+            System.out.println("There is no function " + name + ".");
+            return false;
+        }
+        errors.reset();
+        int body = parser.parseFunctionBody(fun);
+        System.out.println("Body of " + name + ":");
+        System.out.print(errors);
+        ast.print(System.out, body);
+
+        // the errors of the full parse, with where each one ends in
+        // fullErrors
+        final java.io.ByteArrayOutputStream fullErrors = new java.io.ByteArrayOutputStream();
+        final java.util.ArrayList<SourcePos> positions = new java.util.ArrayList<SourcePos>();
+        final java.util.ArrayList<Integer> ends = new java.util.ArrayList<Integer>();
+        Parser full = new Parser(tokens.reader(), new ErrorReporter(new java.io.PrintStream(fullErrors)) {
+            public void reportError(String message, String tokenName, SourcePos pos) {
+                super.reportError(message, tokenName, pos);
+                positions.add(pos);
+                ends.add(fullErrors.size());
+            }
+        });
+        if (explicitStack) {
+            full.enableExplicitStack();
+        }
+        full.parse();
+        Ast fullAst = full.getAst();
+        int fullFun = Ast.NONE;
+        for (int n = fullAst.firstChild(fullAst.root()); n != Ast.NONE; n = fullAst.nextSibling(n)) {
+            if (fullAst.kind(n) == Ast.FUNDECL && fullAst.streamIndex(n) == ast.streamIndex(fun)) {
+                fullFun = n;
+                break;
+            }
+        }
+        if (fullFun == Ast.NONE) {
+            System.out.println("A full parse has no function " + name + " at token " + ast.streamIndex(fun) + ".");
+            return false;
+        }
+        int fullBody = fullAst.child(fullFun, 2);
+        String difference = EditCheck.difference(ast, body, fullAst, fullBody);
+        if (difference == null) {
+            // a body that gives up is EMPTY, so take the range from the
+            // skipped body's tokens
+            int i = ast.streamIndex(fun);
+            while (tokens.kind(i) != Token.LEFTBRACE && tokens.kind(i) != Token.EOF) {
+                i++;
+            }
+            SourcePos open = tokens.sourcePos(i);
+            SourcePos close = null;
+            if (fullAst.kind(fullBody) == Ast.COMPOUNDSTMT) {
+                close = fullAst.endToken(fullBody).GetSourcePos();
+            }
+            String bytes = fullErrors.toString();
+            StringBuilder within = new StringBuilder();
+            for (int e = 0; e < positions.size(); e++) {
+                if (!before(positions.get(e), open) && (close == null || !before(close, positions.get(e)))) {
+                    within.append(bytes, (e == 0) ? 0 : ends.get(e - 1), ends.get(e));
+                }
+            }
+            if (!within.toString().equals(errors.toString())) {
+                difference = "a full parse reports\n" + within + "instead of\n" + errors;
+            }
+        }
+        if (difference != null) {
+            System.out.println("The body differs from a full parse: " + difference);
+            return false;
+        }
+        System.out.println("The body agrees with a full parse.");
+        return true;
+    }
+
+    // true if p starts before q
+    private static boolean before (SourcePos p, SourcePos q) {
+        return p.StartLine < q.StartLine || (p.StartLine == q.StartLine && p.StartCol < q.StartCol);
+    }
+
+    // Parses a file for listener alone, without keeping a tree.
+    private static void listen (String sourceName, ParseListener listener, boolean skeleton) {
+        SourceFile source = new SourceFile(sourceName);
+        if (!source.isOpen()) {
+            System.out.println("Error opening file " + sourceName);
+            System.exit(1);
+        }
+        Parser parser = new Parser(new Scanner(source).scanAll().reader(), new ErrorReporter());
+        if (skeleton) {
+            parser.enableSkeleton();
+        }
+        parser.addListener(listener);
+        parser.discardTree();
+        parser.parse();
+    }
+
+    private static boolean parseTokens (TokenSource tokens, java.io.PrintStream out) {
+        ErrorReporter reporter = new ErrorReporter(out);
+        if (tableDriven) {
+            // recognizer only, from the tables of MiniC.grammar
+            new LL1Parser(tokens, reporter).parse();
+        } else {
+            Parser parser = new Parser(tokens, reporter);
+            if (explicitStack) {
+                parser.enableExplicitStack();
+            }
+            if (parallel) {
+                parser.enableParallel(java.util.concurrent.ForkJoinPool.commonPool());
+            }
+            parser.parse();	    // 1st pass
+            if (printTree) {
+                parser.getAst().print(out, parser.getAst().root());
+            }
+        }
         /*
          * The following loop was used with the first assignment
          * to repeatedly request tokens from the scanner.
@@ -47,20 +488,378 @@ public class MiniC{
 
 	boolean successful = (reporter.numErrors == 0);
         if (successful) {
-            System.out.println("Compilation was successful.");
+            out.println("Compilation was successful.");
         } else {
-            System.out.println("Compilation was unsuccessful.");
+            out.println("Compilation was unsuccessful.");
         }
+        return successful;
+    }
+
+    // Compiles the files on jobs threads, each with compileProgram().
+    // The output of a file is kept back until the files before it are
+    // done, so that it comes out in the order of names, followed by a
+    // summary. With outDir, the output for a file goes to outDir under
+    // its name in outputs, and only the summary is printed. Returns
+    // false if a file could not be opened.
+    static boolean compileBatch (java.util.List<String> names, java.util.List<String> outputs,
+                              int jobs, String outDir) {
+        java.util.concurrent.ExecutorService pool =
+            java.util.concurrent.Executors.newFixedThreadPool(jobs);
+        java.util.ArrayList<java.util.concurrent.Future<BatchResult>> results =
+            new java.util.ArrayList<java.util.concurrent.Future<BatchResult>>();
+        for (final String name : names) {
+            results.add(pool.submit(new java.util.concurrent.Callable<BatchResult>() {
+                public BatchResult call() {
+                    return compileToBuffer(name);
+                }
+            }));
+        }
+        pool.shutdown();
+
+        int successful = 0;
+        boolean opened = true;
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            BatchResult result;
+            try {
+                result = results.get(i).get();
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                return false;
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            if (result.result == SUCCESSFUL) {
+                successful++;
+            } else if (result.result == NOT_OPENED) {
+                opened = false;
+            }
+            if (outDir == null) {
+                System.out.println("==> " + name + " <==");
+                System.out.write(result.output, 0, result.output.length);
+                System.out.flush();
+                continue;
+            }
+            java.io.File out = new java.io.File(outDir, outputs.get(i));
+            try {
+                out.getParentFile().mkdirs();
+                java.nio.file.Files.write(out.toPath(), result.output);
+            } catch (java.io.IOException e) {
+                System.out.println("Error writing " + out);
+            }
+        }
+        System.out.println(names.size() + " files compiled, " + successful + " successful, "
+                           + (names.size() - successful) + " unsuccessful.");
+        return opened;
+    }
+
+    static class BatchResult {
+        byte[] output;
+        int result = UNSUCCESSFUL;	// of compileProgram()
+    }
+
+    // Compiles one file as compileProgram() does, into a buffer.
+    static BatchResult compileToBuffer (String sourceName) {
+        return compileToBuffer(sourceName, sourceName);
+    }
+
+    static BatchResult compileToBuffer (String path, String sourceName) {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        java.io.PrintStream out = new java.io.PrintStream(bytes);
+        BatchResult result = new BatchResult();
+        try {
+            result.result = compileProgram(path, sourceName, out);
+        } catch (RuntimeException e) {
+            out.println("Compilation failed: " + e);
+        } catch (StackOverflowError e) {
+            out.println("Compilation failed: " + e);
+        }
+        out.flush();
+        result.output = bytes.toByteArray();
+        return result;
+    }
+
+    // Adds file, or the files below it if it is a directory, in the
+    // order of their names. The output name of a file is s_ and its
+    // name, as the test scripts name it, in the directories between the
+    // file and the argument it was found under, so that files of the
+    // same name in different directories do not overwrite each other.
+    private static void addSources (java.io.File file, String directory,
+                                    java.util.List<String> names, java.util.List<String> outputs) {
+        if (!file.isDirectory()) {
+            names.add(file.getPath());
+            outputs.add(directory + "s_" + file.getName());
+            return;
+        }
+        java.io.File[] files = file.listFiles();
+        if (files == null) {
+            return;
+        }
+        java.util.Arrays.sort(files);
+        for (java.io.File f : files) {
+            if (!f.getName().startsWith(".")) {
+                addSources(f, (f.isDirectory()) ? directory + f.getName() + "/" : directory, names, outputs);
+            }
+        }
+    }
+
+    // Returns the names of two files with the same output name, and
+    // that name, or null if there are none.
+    private static String[] duplicateOutput (java.util.List<String> names, java.util.List<String> outputs) {
+        java.util.HashMap<String, String> seen = new java.util.HashMap<String, String>();
+        for (int i = 0; i < names.size(); i++) {
+            String earlier = seen.put(outputs.get(i), names.get(i));
+            if (earlier != null) {
+                return new String[] {earlier, names.get(i), outputs.get(i)};
+            }
+        }
+        return null;
+    }
+
+    static void usage() {
+        System.out.println("Usage: MiniC [--explicit-stack] [--parallel [--chunk-size n] | --pipelined | --ll1] [--stats | --stats=json] filename");
+        System.out.println("       MiniC [--explicit-stack] [--parallel [--chunk-size n] | --pipelined] --ast filename");
+        System.out.println("       MiniC [--explicit-stack] [--parallel [--chunk-size n] | --pipelined | --ll1] [--stats | --stats=json] --batch [--jobs n] [--out dir] file-or-dir...");
+        System.out.println("       MiniC [--explicit-stack] [--parallel [--chunk-size n] | --pipelined | --ll1] [--stats | --stats=json] [--jobs n] [--deadline ms] --serve socket");
+        System.out.println("       MiniC --connect socket filename");
+        System.out.println("       MiniC --dump-tokens dumpfile filename");
+        System.out.println("       MiniC --diff-tokens dumpfile filename");
+        System.out.println("       MiniC --declarations filename");
+        System.out.println("       MiniC --events filename");
+        System.out.println("       MiniC --lookahead filename");
+        System.out.println("       MiniC --check-edits n filename");
+        System.out.println("       MiniC [--explicit-stack] --check-reparse n filename");
+        System.out.println("       MiniC [--explicit-stack] --body name filename");
+        System.out.println("       MiniC [--explicit-stack] [--parallel | --ll1] --replay dumpfile");
+        System.exit(1);
     }
 
     public static void main(String[] args) {
 
-        if (args.length != 1) {
-            System.out.println("Usage: MiniC filename");
-            System.exit(1);
+        String dumpName = null;
+        String replayName = null;
+        String diffName = null;
+        int scanEdits = 0;
+        int parseEdits = 0;
+        String bodyName = null;
+        boolean chunked = false;
+        boolean declarations = false;
+        boolean events = false;
+        boolean lookahead = false;
+        boolean batch = false;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        String outDir = null;
+        String serveSocket = null;
+        long deadline = 10000;
+        String connectSocket = null;
+        int a = 0;
+        while (a < args.length && args[a].startsWith("--")) {
+            if (args[a].equals("--explicit-stack")) {
+                explicitStack = true;
+                a++;
+            } else if (args[a].equals("--parallel")) {
+                parallel = true;
+                a++;
+            } else if (args[a].equals("--stats")) {
+                statistics = "text";
+                a++;
+            } else if (args[a].equals("--stats=json")) {
+                statistics = "json";
+                a++;
+            } else if (args[a].equals("--pipelined")) {
+                pipelined = true;
+                a++;
+            } else if (args[a].equals("--declarations")) {
+                declarations = true;
+                a++;
+            } else if (args[a].equals("--events")) {
+                events = true;
+                a++;
+            } else if (args[a].equals("--ast")) {
+                printTree = true;
+                a++;
+            } else if (args[a].equals("--lookahead")) {
+                lookahead = true;
+                a++;
+            } else if (args[a].equals("--ll1")) {
+                tableDriven = true;
+                a++;
+            } else if (args[a].equals("--batch")) {
+                batch = true;
+                a++;
+            } else if (args[a].equals("--chunk-size") && a + 1 < args.length) {
+                try {
+                    chunkSize = Integer.parseInt(args[a + 1]);
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+                if (chunkSize < 1) {
+                    usage();
+                }
+                chunked = true;
+                a += 2;
+            } else if (args[a].equals("--jobs") && a + 1 < args.length) {
+                try {
+                    jobs = Integer.parseInt(args[a + 1]);
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+                if (jobs < 1) {
+                    usage();
+                }
+                a += 2;
+            } else if (args[a].equals("--out") && a + 1 < args.length) {
+                outDir = args[a + 1];
+                a += 2;
+            } else if (args[a].equals("--serve") && a + 1 < args.length) {
+                serveSocket = args[a + 1];
+                a += 2;
+            } else if (args[a].equals("--deadline") && a + 1 < args.length) {
+                try {
+                    deadline = Long.parseLong(args[a + 1]);
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+                if (deadline < 1) {
+                    usage();
+                }
+                a += 2;
+            } else if (args[a].equals("--connect") && a + 1 < args.length) {
+                connectSocket = args[a + 1];
+                a += 2;
+            } else if (args[a].equals("--dump-tokens") && a + 1 < args.length) {
+                dumpName = args[a + 1];
+                a += 2;
+            } else if (args[a].equals("--check-edits") && a + 1 < args.length) {
+                try {
+                    scanEdits = Integer.parseInt(args[a + 1]);
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+                if (scanEdits < 1) {
+                    usage();
+                }
+                a += 2;
+            } else if (args[a].equals("--check-reparse") && a + 1 < args.length) {
+                try {
+                    parseEdits = Integer.parseInt(args[a + 1]);
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+                if (parseEdits < 1) {
+                    usage();
+                }
+                a += 2;
+            } else if (args[a].equals("--body") && a + 1 < args.length) {
+                bodyName = args[a + 1];
+                a += 2;
+            } else if (args[a].equals("--diff-tokens") && a + 1 < args.length) {
+                diffName = args[a + 1];
+                a += 2;
+            } else if (args[a].equals("--replay") && a + 1 < args.length) {
+                replayName = args[a + 1];
+                a += 2;
+            } else {
+                usage();
+            }
+        }
+        // each of these decides how the tokens reach the parser
+        if ((parallel ? 1 : 0) + (pipelined ? 1 : 0) + (tableDriven ? 1 : 0) > 1) {
+            System.out.println("Error: --parallel, --pipelined and --ll1 exclude each other.");
+            usage();
+        }
+        if (chunked && (!parallel || replayName != null)) {
+            System.out.println("Error: --chunk-size applies to scanning with --parallel only.");
+            usage();
+        }
+        if (printTree && tableDriven) {
+            System.out.println("Error: --ll1 builds no tree for --ast.");
+            usage();
+        }
+        if (pipelined && replayName != null) {
+            System.out.println("Error: --pipelined does not apply to --replay.");
+            usage();
+        }
+        if (serveSocket != null) {
+            if (a != args.length) {
+                usage();
+            }
+            try {
+                new CompileServer(serveSocket, jobs, deadline).serve();
+            } catch (java.io.IOException e) {
+                System.out.println("Error serving on " + serveSocket + ": " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (batch) {
+            if (a == args.length || replayName != null || dumpName != null || diffName != null
+                || scanEdits > 0 || parseEdits > 0 || bodyName != null || declarations || events
+                || lookahead) {
+                usage();
+            }
+            java.util.ArrayList<String> names = new java.util.ArrayList<String>();
+            java.util.ArrayList<String> outputs = new java.util.ArrayList<String>();
+            for (; a < args.length; a++) {
+                addSources(new java.io.File(args[a]), "", names, outputs);
+            }
+            String[] duplicate = (outDir == null) ? null : duplicateOutput(names, outputs);
+            if (duplicate != null) {
+                System.out.println("Error: " + duplicate[0] + " and " + duplicate[1]
+                                   + " would both be written to " + new java.io.File(outDir, duplicate[2]));
+                System.exit(1);
+            }
+            if (!compileBatch(names, outputs, jobs, outDir)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (replayName != null && a == args.length) {
+            replayProgram(replayName);
+            return;
+        }
+        if (args.length - a != 1 || replayName != null) {
+            usage();
         }
 
-        String sourceName = args[0];
-        compileProgram(sourceName);
+        String sourceName = args[a];
+        if (connectSocket != null) {
+            // the server compiles with the options it was started with
+            int status = 1;
+            try {
+                status = CompileServer.request(connectSocket, sourceName, System.out);
+            } catch (java.io.IOException e) {
+                System.out.println("Error connecting to " + connectSocket + ": " + e.getMessage());
+            }
+            System.exit(status);
+        } else if (declarations) {
+            listDeclarations(sourceName);
+        } else if (events) {
+            listEvents(sourceName);
+        } else if (lookahead) {
+            listLookahead(sourceName);
+        } else if (dumpName != null) {
+            dumpTokens(sourceName, dumpName);
+        } else if (scanEdits > 0) {
+            if (!EditCheck.checkScanner(sourceName, scanEdits, System.out)) {
+                System.exit(1);
+            }
+        } else if (parseEdits > 0) {
+            if (!EditCheck.checkReparse(sourceName, parseEdits, explicitStack, System.out)) {
+                System.exit(1);
+            }
+        } else if (bodyName != null) {
+            if (!showBody(bodyName, sourceName)) {
+                System.exit(1);
+            }
+        } else if (diffName != null) {
+            if (!diffTokens(diffName, sourceName)) {
+                System.exit(1);
+            }
+        } else {
+            if (compileProgram(sourceName, System.out) == NOT_OPENED) {
+                System.exit(1);
+            }
+        }
     }
 }
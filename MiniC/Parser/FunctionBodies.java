@@ -0,0 +1,122 @@
+package MiniC.Parser;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import MiniC.Scanner.Cancellation;
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenStream;
+import MiniC.Scanner.TokenStreamReader;
+import MiniC.ErrorReporter;
+
+// FunctionBodies parses the function bodies of a token stream ahead of
+// the parser, on a fork-join pool.
+//
+// Before parsing starts, one pass over the token kinds matches braces
+// and takes every "{" that follows a ")" outside of braces to start a
+// function body. Each of them is parsed by a Parser of its own, which
+// reads the stream from that "{" on, holds back its error messages and
+// builds its own Ast. Apart from the error count, a Parser's state at
+// the start of a body is always the same, so such a parse does exactly
+// what the sequential parse would do there. Parser.takeBody() uses the
+// result when parseFunPart() gets to the body, unless the parse gave
+// up, or its errors would have hit MAX_ERRORS; then the body is parsed
+// again in sequence.
+//
+// The body parses stop, whether running or not yet started, once the
+// parse that made them is cancelled or over: see Cancellation.
+
+final class FunctionBodies {
+
+    private java.util.HashMap<Integer, BodyParse> tasks =
+	new java.util.HashMap<Integer, BodyParse>();
+    private Cancellation cancellation = new Cancellation();
+
+    FunctionBodies(TokenStream stream, ErrorReporter reporter,
+		   boolean explicitStack, ForkJoinPool pool) {
+	int depth = 0;
+	int previous = Token.EOF;
+	for (int i = 0; i < stream.size(); i++) {
+	    int kind = stream.kind(i);
+	    if (kind == Token.LEFTBRACE) {
+		if (depth == 0 && previous == Token.RIGHTPAREN) {
+		    if (cancellation.isCancelled()) {
+			cancel();	// as parse() never gets to
+			throw new java.util.concurrent.CancellationException("parse cancelled");
+		    }
+		    BodyParse task = new BodyParse(stream, i, reporter.hold(), explicitStack,
+						   cancellation);
+		    tasks.put(i, task);
+		    pool.execute(task);
+		}
+		depth++;
+	    } else if (kind == Token.RIGHTBRACE && depth > 0) {
+		depth--;
+	    }
+	    previous = kind;
+	}
+    }
+
+    // The parser of the body that starts at token index, once it is
+    // done, or null if no body was parsed from there. Unlike join(),
+    // get() does not hold back an interrupt of the waiting thread.
+    Parser take(int index) {
+	BodyParse task = tasks.remove(index);
+	if (task == null) {
+	    return null;
+	}
+	try {
+	    return task.get();
+	} catch (InterruptedException e) {
+	    cancel();
+	    Thread.currentThread().interrupt();
+	    throw new java.util.concurrent.CancellationException("parse cancelled");
+	} catch (java.util.concurrent.ExecutionException e) {
+	    if (e.getCause() instanceof Error) {
+		throw (Error) e.getCause();
+	    }
+	    throw (RuntimeException) e.getCause();
+	}
+    }
+
+    // Drops the bodies that were not taken, and stops those of them
+    // that are being parsed.
+    void cancel() {
+	cancellation.cancel();
+	for (BodyParse task : tasks.values()) {
+	    task.cancel(false);
+	}
+	tasks.clear();
+    }
+
+    static class BodyParse extends RecursiveTask<Parser> {
+
+	private static final long serialVersionUID = 1L;
+
+	private TokenStream stream;
+	private int start;
+	private ErrorReporter reporter;
+	private boolean explicitStack;
+	private Cancellation cancellation;
+
+	BodyParse(TokenStream stream, int start, ErrorReporter reporter, boolean explicitStack,
+		  Cancellation cancellation) {
+	    this.stream = stream;
+	    this.start = start;
+	    this.reporter = reporter;
+	    this.explicitStack = explicitStack;
+	    this.cancellation = cancellation;
+	}
+
+	protected Parser compute() {
+	    Parser parser = new Parser(new TokenStreamReader(stream, start, stream.size()), reporter);
+	    if (explicitStack) {
+		parser.enableExplicitStack();
+	    }
+	    parser.cancelWith(cancellation);
+	    parser.parseBody();
+	    return parser;
+	}
+    }
+
+}
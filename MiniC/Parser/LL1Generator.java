@@ -0,0 +1,378 @@
+package MiniC.Parser;
+
+import MiniC.Scanner.Token;
+
+// LL1Generator reads a grammar in the notation of MiniC.grammar,
+// computes the FIRST and FOLLOW sets of its nonterminals as bitsets
+// over the token kinds, and writes the tables of LL1Parser as a Java
+// class. A grammar that is not LL(1) is rejected with a list of its
+// conflicts, so the build stops before a wrong table is generated:
+//
+//   java -cp .. MiniC.Parser.LL1Generator Parser/MiniC.grammar Parser/LL1Tables.java
+
+public class LL1Generator {
+
+    static final int NR_TERMINALS = Token.EOF + 1;
+
+    private java.util.ArrayList<String> names = new java.util.ArrayList<String>();
+    // per nonterminal its alternatives, per alternative its symbol names
+    private java.util.ArrayList<java.util.ArrayList<java.util.ArrayList<String>>> rules =
+	new java.util.ArrayList<java.util.ArrayList<java.util.ArrayList<String>>>();
+    private java.util.HashSet<String> greedy = new java.util.HashSet<String>();
+
+    private int[][][] alternatives;	// symbols: token kinds, or NR_TERMINALS + nonterminal
+    private long[] first;
+    private long[] follow;
+    private boolean[] nullable;
+    private short[] predict;
+    private java.util.ArrayList<String> errors = new java.util.ArrayList<String>();
+
+    ///////////////////////////////////////////////////////////////////////////////
+    //
+    // Reading the grammar:
+    //
+    // name ::= symbol* ( "|" symbol* )*   starts a rule; %empty marks an
+    // empty alternative; %greedy name* lists rules whose conflicts are
+    // resolved in favour of the earlier alternative; # starts a comment.
+    //
+    ///////////////////////////////////////////////////////////////////////////////
+
+    void read (String grammarFile) throws java.io.IOException {
+	java.util.ArrayList<String> words = new java.util.ArrayList<String>();
+	for (String line : java.nio.file.Files.readAllLines(java.nio.file.Paths.get(grammarFile))) {
+	    int comment = line.indexOf('#');
+	    if (comment >= 0) {
+		line = line.substring(0, comment);
+	    }
+	    String[] lineWords = line.trim().split("\\s+");
+	    if (lineWords[0].equals("%greedy")) {
+		for (int i = 1; i < lineWords.length; i++) {
+		    greedy.add(lineWords[i]);
+		}
+	    } else if (lineWords[0].length() > 0) {
+		words.addAll(java.util.Arrays.asList(lineWords));
+	    }
+	}
+
+	java.util.ArrayList<java.util.ArrayList<String>> rule = null;
+	java.util.ArrayList<String> alternative = null;
+	for (int i = 0; i < words.size(); i++) {
+	    String w = words.get(i);
+	    if (i + 1 < words.size() && words.get(i + 1).equals("::=")) {
+		if (names.contains(w)) {
+		    errors.add("rule " + w + " is defined twice");
+		}
+		names.add(w);
+		rule = new java.util.ArrayList<java.util.ArrayList<String>>();
+		rules.add(rule);
+		alternative = new java.util.ArrayList<String>();
+		rule.add(alternative);
+		i++;
+	    } else if (rule == null) {
+		errors.add("\"" + w + "\" before the first rule");
+	    } else if (w.equals("|")) {
+		alternative = new java.util.ArrayList<String>();
+		rule.add(alternative);
+	    } else if (!w.equals("%empty")) {
+		alternative.add(w);
+	    }
+	}
+	for (String g : greedy) {
+	    if (!names.contains(g)) {
+		errors.add("%greedy rule " + g + " is not defined");
+	    }
+	}
+    }
+
+    // Maps symbol names to token kinds and nonterminal numbers.
+    void resolve() {
+	alternatives = new int[rules.size()][][];
+	for (int n = 0; n < rules.size(); n++) {
+	    java.util.ArrayList<java.util.ArrayList<String>> rule = rules.get(n);
+	    alternatives[n] = new int[rule.size()][];
+	    for (int a = 0; a < rule.size(); a++) {
+		java.util.ArrayList<String> alternative = rule.get(a);
+		int[] symbols = new int[alternative.size()];
+		for (int i = 0; i < symbols.length; i++) {
+		    symbols[i] = symbol(alternative.get(i), names.get(n));
+		}
+		alternatives[n][a] = symbols;
+	    }
+	}
+    }
+
+    int symbol (String name, String rule) {
+	int n = names.indexOf(name);
+	if (n >= 0) {
+	    return NR_TERMINALS + n;
+	}
+	try {
+	    java.lang.reflect.Field f = Token.class.getField(name);
+	    if (f.getType() == int.class
+		&& java.lang.reflect.Modifier.isStatic(f.getModifiers())) {
+		return f.getInt(null);
+	    }
+	} catch (NoSuchFieldException e) {
+	} catch (IllegalAccessException e) {
+	}
+	errors.add("undefined symbol " + name + " in rule " + rule);
+	return Token.ERROR;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////
+    //
+    // FIRST and FOLLOW sets:
+    //
+    // Bit k of a set stands for token kind k; all token kinds fit into
+    // one long. Both sets are computed by iterating to a fixpoint.
+    //
+    ///////////////////////////////////////////////////////////////////////////////
+
+    // FIRST of symbols[from..]; sets sequenceNullable as a side effect.
+    private boolean sequenceNullable;
+
+    long firstOf (int[] symbols, int from) {
+	long set = 0;
+	for (int i = from; i < symbols.length; i++) {
+	    int s = symbols[i];
+	    if (s < NR_TERMINALS) {
+		sequenceNullable = false;
+		return set | (1L << s);
+	    }
+	    set |= first[s - NR_TERMINALS];
+	    if (!nullable[s - NR_TERMINALS]) {
+		sequenceNullable = false;
+		return set;
+	    }
+	}
+	sequenceNullable = true;
+	return set;
+    }
+
+    void computeSets() {
+	int nr = alternatives.length;
+	first = new long[nr];
+	follow = new long[nr];
+	nullable = new boolean[nr];
+
+	boolean changed = true;
+	while (changed) {
+	    changed = false;
+	    for (int n = 0; n < nr; n++) {
+		for (int[] symbols : alternatives[n]) {
+		    long set = first[n] | firstOf(symbols, 0);
+		    if (set != first[n] || (sequenceNullable && !nullable[n])) {
+			first[n] = set;
+			nullable[n] |= sequenceNullable;
+			changed = true;
+		    }
+		}
+	    }
+	}
+
+	changed = true;
+	while (changed) {
+	    changed = false;
+	    for (int n = 0; n < nr; n++) {
+		for (int[] symbols : alternatives[n]) {
+		    for (int i = 0; i < symbols.length; i++) {
+			if (symbols[i] < NR_TERMINALS) {
+			    continue;
+			}
+			int b = symbols[i] - NR_TERMINALS;
+			long set = follow[b] | firstOf(symbols, i + 1);
+			if (sequenceNullable) {
+			    set |= follow[n];
+			}
+			if (set != follow[b]) {
+			    follow[b] = set;
+			    changed = true;
+			}
+		    }
+		}
+	    }
+	}
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////
+    //
+    // The predict table:
+    //
+    // Alternative a of rule n is predicted by FIRST(a), and by
+    // FOLLOW(n) if a can derive the empty string. Tokens that predict
+    // no alternative expand the last one. Tokens that predict several
+    // are conflicts, unless the rule is %greedy.
+    //
+    ///////////////////////////////////////////////////////////////////////////////
+
+    void computeTable() {
+	int nr = alternatives.length;
+	predict = new short[nr * NR_TERMINALS];
+	int production = 0;
+	for (int n = 0; n < nr; n++) {
+	    int[][] alts = alternatives[n];
+	    long[] sets = new long[alts.length];
+	    for (int a = 0; a < alts.length; a++) {
+		sets[a] = firstOf(alts[a], 0);
+		if (sequenceNullable) {
+		    sets[a] |= follow[n];
+		}
+	    }
+	    if (!greedy.contains(names.get(n))) {
+		for (int a = 0; a < alts.length; a++) {
+		    for (int b = a + 1; b < alts.length; b++) {
+			long both = sets[a] & sets[b];
+			if (both != 0) {
+			    errors.add("conflict in rule " + names.get(n) + " between alternatives "
+				       + (a + 1) + " and " + (b + 1) + " on " + spell(both));
+			}
+		    }
+		}
+	    }
+	    java.util.Arrays.fill(predict, n * NR_TERMINALS, (n + 1) * NR_TERMINALS,
+				  (short) (production + alts.length - 1));
+	    for (int a = alts.length - 1; a >= 0; a--) {
+		for (int k = 0; k < NR_TERMINALS; k++) {
+		    if ((sets[a] >>> k & 1) != 0) {
+			predict[n * NR_TERMINALS + k] = (short) (production + a);
+		    }
+		}
+	    }
+	    production += alts.length;
+	}
+    }
+
+    static String spell (long set) {
+	StringBuilder s = new StringBuilder();
+	for (int k = 0; k < NR_TERMINALS; k++) {
+	    if ((set >>> k & 1) != 0) {
+		s.append(s.length() == 0 ? "" : " ").append(Token.spell(k));
+	    }
+	}
+	return s.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////
+    //
+    // Writing LL1Tables.java:
+    //
+    ///////////////////////////////////////////////////////////////////////////////
+
+    void write (String grammarFile, String javaFile) throws java.io.IOException {
+	java.io.PrintStream out = new java.io.PrintStream(new java.io.FileOutputStream(javaFile));
+	String grammarName = new java.io.File(grammarFile).getName();
+
+	out.println("package MiniC.Parser;");
+	out.println();
+	out.println("// Generated by LL1Generator from " + grammarName + "; do not edit.");
+	out.println("// Symbols below NR_TERMINALS are token kinds, the others nonterminals.");
+	out.println();
+	out.println("final class LL1Tables {");
+	out.println();
+	out.println("    static final int NR_TERMINALS = " + NR_TERMINALS + ";");
+	out.println();
+	out.println("    static final int");
+	for (int n = 0; n < names.size(); n++) {
+	    out.println("\t" + names.get(n).toUpperCase() + " = " + (NR_TERMINALS + n)
+			+ (n + 1 < names.size() ? "," : ";"));
+	}
+	out.println();
+	out.println("    static final String[] names = {");
+	StringBuilder list = new StringBuilder();
+	for (String name : names) {
+	    list.append(list.length() == 0 ? "" : ", ").append('"').append(name).append('"');
+	}
+	writeWrapped(out, list.toString());
+	out.println("    };");
+	out.println();
+	out.println("    // first[n - NR_TERMINALS] has bit k set if nonterminal n can");
+	out.println("    // start with a token of kind k");
+	out.println("    static final long[] first = {");
+	list.setLength(0);
+	for (long set : first) {
+	    list.append(list.length() == 0 ? "" : ", ").append("0x").append(Long.toHexString(set)).append('L');
+	}
+	writeWrapped(out, list.toString());
+	out.println("    };");
+	out.println();
+	out.println("    // production p replaces a nonterminal by the symbols");
+	out.println("    // rhs[rhsStart[p]] .. rhs[rhsStart[p + 1] - 1]");
+	list.setLength(0);
+	StringBuilder starts = new StringBuilder("0");
+	int length = 0;
+	for (int[][] alts : alternatives) {
+	    for (int[] symbols : alts) {
+		for (int s : symbols) {
+		    list.append(length == 0 ? "" : ", ").append(s);
+		    length++;
+		}
+		starts.append(", ").append(length);
+	    }
+	}
+	out.println("    static final int[] rhsStart = {");
+	writeWrapped(out, starts.toString());
+	out.println("    };");
+	out.println("    static final int[] rhs = {");
+	writeWrapped(out, list.toString());
+	out.println("    };");
+	out.println();
+	out.println("    // predict[(n - NR_TERMINALS) * NR_TERMINALS + k] is the production");
+	out.println("    // that expands nonterminal n before a token of kind k");
+	out.println("    static final short[] predict = {");
+	list.setLength(0);
+	for (short p : predict) {
+	    list.append(list.length() == 0 ? "" : ", ").append(p);
+	}
+	writeWrapped(out, list.toString());
+	out.println("    };");
+	out.println();
+	out.println("}");
+	out.close();
+    }
+
+    static void writeWrapped (java.io.PrintStream out, String list) {
+	String[] items = list.split(", ");
+	StringBuilder line = new StringBuilder("\t");
+	for (int i = 0; i < items.length; i++) {
+	    String item = items[i] + (i + 1 < items.length ? "," : "");
+	    if (line.length() > 1 && line.length() + item.length() > 72) {
+		out.println(line.toString().replaceAll("\\s+$", ""));
+		line.setLength(1);
+	    }
+	    line.append(item).append(' ');
+	}
+	out.println(line.toString().replaceAll("\\s+$", ""));
+    }
+
+    public static void main (String[] args) {
+	if (args.length != 2) {
+	    System.out.println("Usage: LL1Generator grammarfile javafile");
+	    System.exit(1);
+	}
+	LL1Generator g = new LL1Generator();
+	try {
+	    g.read(args[0]);
+	    if (g.names.isEmpty()) {
+		g.errors.add("no rules");
+	    }
+	    if (g.errors.isEmpty()) {
+		g.resolve();
+	    }
+	    if (g.errors.isEmpty()) {
+		g.computeSets();
+		g.computeTable();
+	    }
+	    if (!g.errors.isEmpty()) {
+		for (String e : g.errors) {
+		    System.out.println(args[0] + ": " + e);
+		}
+		System.exit(1);
+	    }
+	    g.write(args[0], args[1]);
+	} catch (java.io.IOException e) {
+	    System.out.println("LL1Generator: " + e.getMessage());
+	    System.exit(1);
+	}
+    }
+
+}
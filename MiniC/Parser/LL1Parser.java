@@ -0,0 +1,79 @@
+package MiniC.Parser;
+
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenSource;
+import MiniC.ErrorReporter;
+
+// LL1Parser recognizes the language of Parser with the tables that
+// LL1Generator computes from MiniC.grammar: one loop over a stack of
+// grammar symbols instead of a method per construct. It builds no
+// tree, needs no thread stack for nesting, and stops at the first
+// syntax error, which it reports in the same words as Parser.
+
+public class LL1Parser {
+
+    private TokenSource scanner;
+    private ErrorReporter errorReporter;
+    private int[] stack = new int[256];
+
+    public LL1Parser(TokenSource lexer, ErrorReporter reporter) {
+	scanner = lexer;
+	errorReporter = reporter;
+    }
+
+    // Returns false if a syntax error was reported.
+    public boolean parse() {
+	final int[] rhs = LL1Tables.rhs;
+	final int[] rhsStart = LL1Tables.rhsStart;
+	final short[] predict = LL1Tables.predict;
+	final int nrTerminals = LL1Tables.NR_TERMINALS;
+
+	Token currentToken = scanner.scan();
+	int[] stack = this.stack;
+	int top = 0;
+	stack[top++] = LL1Tables.START;
+	while (top > 0) {
+	    int symbol = stack[--top];
+	    if (symbol < nrTerminals) {
+		if (symbol != currentToken.kind) {
+		    syntaxError(symbol, currentToken);
+		    return false;
+		}
+		currentToken = scanner.scan();
+	    } else if (symbol == LL1Tables.TYPE && !startsWith(symbol, currentToken.kind)) {
+		// no alternative is taken for granted where a type is missing
+		errorReporter.reportError("type expected here", "", currentToken.GetSourcePos());
+		return false;
+	    } else {
+		int p = predict[(symbol - nrTerminals) * nrTerminals + currentToken.kind];
+		int from = rhsStart[p];
+		int to = rhsStart[p + 1];
+		if (top + to - from > stack.length) {
+		    stack = java.util.Arrays.copyOf(stack, 2 * (top + to - from));
+		    this.stack = stack;
+		}
+		// push the right-hand side in reverse, so its first symbol is on top
+		for (int i = to - 1; i >= from; i--) {
+		    stack[top++] = rhs[i];
+		}
+	    }
+	}
+	return true;
+    }
+
+    void syntaxError(int expected, Token currentToken) {
+	if (expected == Token.EOF) {
+	    errorReporter.reportError("\"%\" not expected after end of program",
+				      currentToken.GetLexeme(), currentToken.GetSourcePos());
+	} else {
+	    errorReporter.reportError("\"%\" expected here",
+				      Token.spell(expected), currentToken.GetSourcePos());
+	}
+    }
+
+    // true if a token of kind k can start nonterminal n of the grammar
+    static boolean startsWith(int n, int k) {
+	return (LL1Tables.first[n - LL1Tables.NR_TERMINALS] >>> k & 1) != 0;
+    }
+
+}
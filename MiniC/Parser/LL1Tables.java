@@ -0,0 +1,162 @@
+package MiniC.Parser;
+
+// Generated by LL1Generator from MiniC.grammar; do not edit.
+// Symbols below NR_TERMINALS are token kinds, the others nonterminals.
+
+final class LL1Tables {
+
+    static final int NR_TERMINALS = 38;
+
+    static final int
+	START = 38,
+	PROGRAM = 39,
+	DECLREST = 40,
+	PARAMS = 41,
+	MOREPARAMS = 42,
+	PARAMDECL = 43,
+	DECLARATOR = 44,
+	ARRAYSIZE = 45,
+	VARPART = 46,
+	VARINIT = 47,
+	INITIALIZER = 48,
+	MOREDECLS = 49,
+	COMPOUND = 50,
+	LOCALDECLS = 51,
+	STMTS = 52,
+	STMT = 53,
+	SUBSTMT = 54,
+	ELSES = 55,
+	FORASSIGN = 56,
+	IDSTMT = 57,
+	ARGLIST = 58,
+	ARGS = 59,
+	MOREEXPRS = 60,
+	OPTEXPR = 61,
+	EXPR = 62,
+	NEXPR = 63,
+	UNARY = 64,
+	NUNARY = 65,
+	BINOPS = 66,
+	BINOP = 67,
+	UNOP = 68,
+	PRIMARY = 69,
+	IDEXPR = 70,
+	TYPE = 71;
+
+    static final String[] names = {
+	"start", "program", "declrest", "params", "moreparams", "paramdecl",
+	"declarator", "arraysize", "varpart", "varinit", "initializer",
+	"moredecls", "compound", "localdecls", "stmts", "stmt", "substmt",
+	"elses", "forassign", "idstmt", "arglist", "args", "moreexprs",
+	"optexpr", "expr", "nexpr", "unary", "nunary", "binops", "binop",
+	"unop", "primary", "idexpr", "type"
+    };
+
+    // first[n - NR_TERMINALS] has bit k set if nonterminal n can
+    // start with a token of kind k
+    static final long[] first = {
+	0x2005280000L, 0x5280000L, 0xd40000002L, 0x5280000L, 0x400000000L,
+	0x5280000L, 0x1L, 0x40000000L, 0xc40000002L, 0x2L, 0x110079811L,
+	0x400000000L, 0x10000000L, 0x5280000L, 0x1ac00001L, 0x1ac00001L,
+	0x1ac00001L, 0x100000L, 0x1L, 0x140000002L, 0x100000000L, 0x100079811L,
+	0x400000000L, 0x100079811L, 0x10007fffdL, 0x100079811L, 0x100079811L,
+	0x100079811L, 0x7fecL, 0x7fecL, 0x1810L, 0x100078001L, 0x140000000L,
+	0x5280000L
+    };
+
+    // production p replaces a nonterminal by the symbols
+    // rhs[rhsStart[p]] .. rhs[rhsStart[p + 1] - 1]
+    static final int[] rhsStart = {
+	0, 2, 6, 6, 10, 11, 13, 13, 16, 16, 18, 20, 23, 23, 27, 29, 29, 30, 34,
+	38, 38, 42, 46, 46, 48, 48, 49, 55, 60, 69, 72, 74, 75, 75, 78, 78, 81,
+	81, 84, 90, 92, 95, 97, 97, 100, 100, 101, 101, 103, 105, 106, 106,
+	108, 109, 112, 112, 113, 114, 115, 116, 117, 118, 119, 120, 121, 122,
+	123, 124, 125, 126, 127, 129, 132, 133, 134, 135, 136, 137, 140, 140,
+	141, 142, 143, 144
+    };
+    static final int[] rhs = {
+	39, 37, 71, 0, 40, 39, 32, 41, 33, 50, 46, 43, 42, 34, 43, 42, 71, 44,
+	0, 45, 30, 15, 31, 45, 47, 49, 35, 1, 48, 63, 28, 62, 60, 29, 34, 44,
+	47, 49, 28, 51, 52, 29, 71, 0, 46, 51, 53, 52, 50, 23, 32, 62, 33, 54,
+	55, 27, 32, 62, 33, 54, 22, 32, 56, 35, 61, 35, 56, 33, 54, 25, 61, 35,
+	0, 57, 53, 20, 54, 55, 0, 1, 62, 1, 62, 35, 30, 62, 31, 1, 62, 35, 58,
+	35, 32, 59, 33, 63, 60, 34, 62, 60, 63, 64, 66, 65, 66, 65, 68, 64, 69,
+	67, 64, 66, 2, 3, 5, 6, 8, 7, 9, 10, 11, 12, 13, 14, 11, 12, 4, 0, 70,
+	32, 62, 33, 15, 17, 16, 18, 58, 30, 62, 31, 26, 24, 19, 21
+    };
+
+    // predict[(n - NR_TERMINALS) * NR_TERMINALS + k] is the production
+    // that expands nonterminal n before a token of kind k
+    static final short[] predict = {
+	0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+	0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2,
+	2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 2, 1, 2, 2, 1, 2, 1, 2, 2, 2, 2, 2, 2, 2,
+	2, 2, 2, 2, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4,
+	4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 3, 4, 4, 4, 4, 4, 6, 6, 6, 6, 6, 6,
+	6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 5, 6, 5, 6, 6, 5, 6, 5, 6, 6, 6,
+	6, 6, 6, 6, 6, 6, 6, 6, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
+	8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 7, 8, 8, 8, 9, 9,
+	9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9,
+	9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 10, 10, 10, 10, 10, 10, 10, 10, 10,
+	10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10,
+	10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 12, 12, 12, 12, 12, 12, 12,
+	12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12,
+	12, 12, 12, 12, 12, 11, 12, 12, 12, 12, 12, 12, 12, 13, 13, 13, 13, 13,
+	13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13,
+	13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 15, 14, 15,
+	15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+	15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 15, 16,
+	17, 17, 17, 16, 17, 17, 17, 17, 17, 17, 16, 16, 17, 17, 16, 16, 16, 16,
+	17, 17, 17, 17, 17, 17, 17, 17, 17, 17, 17, 17, 17, 16, 17, 17, 17, 17,
+	17, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19,
+	19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 19, 18,
+	19, 19, 19, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20,
+	20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20, 20,
+	20, 20, 20, 20, 20, 22, 22, 22, 22, 22, 22, 22, 22, 22, 22, 22, 22, 22,
+	22, 22, 22, 22, 22, 22, 21, 22, 21, 22, 22, 21, 22, 21, 22, 22, 22, 22,
+	22, 22, 22, 22, 22, 22, 22, 23, 24, 24, 24, 24, 24, 24, 24, 24, 24, 24,
+	24, 24, 24, 24, 24, 24, 24, 24, 24, 24, 24, 23, 23, 24, 23, 24, 23, 23,
+	24, 24, 24, 24, 24, 24, 24, 24, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30,
+	30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 28, 26, 30, 29, 30,
+	27, 25, 30, 30, 30, 30, 30, 30, 30, 30, 30, 31, 32, 32, 32, 32, 32, 32,
+	32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 31, 31, 32,
+	31, 32, 31, 31, 32, 32, 32, 32, 32, 32, 32, 32, 32, 34, 34, 34, 34, 34,
+	34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 33, 34, 34,
+	34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 34, 35, 36, 36,
+	36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36,
+	36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 36, 39,
+	37, 39, 39, 39, 39, 39, 39, 39, 39, 39, 39, 39, 39, 39, 39, 39, 39, 39,
+	39, 39, 39, 39, 39, 39, 39, 39, 39, 39, 39, 38, 39, 39, 39, 39, 39, 39,
+	39, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40,
+	40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40,
+	40, 40, 40, 41, 42, 42, 42, 41, 42, 42, 42, 42, 42, 42, 41, 41, 42, 42,
+	41, 41, 41, 41, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 41,
+	42, 42, 42, 42, 42, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44,
+	44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44, 44,
+	44, 44, 44, 43, 44, 44, 44, 45, 46, 46, 46, 45, 46, 46, 46, 46, 46, 46,
+	45, 45, 46, 46, 45, 45, 45, 45, 46, 46, 46, 46, 46, 46, 46, 46, 46, 46,
+	46, 46, 46, 45, 46, 46, 46, 46, 46, 47, 47, 47, 47, 47, 47, 47, 47, 47,
+	47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 47,
+	47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 47, 48, 48, 48, 48, 48, 48, 48,
+	48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48,
+	48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 48, 49, 50, 50, 50, 49,
+	50, 50, 50, 50, 50, 50, 49, 49, 50, 50, 49, 49, 49, 49, 50, 50, 50, 50,
+	50, 50, 50, 50, 50, 50, 50, 50, 50, 49, 50, 50, 50, 50, 50, 52, 52, 52,
+	52, 51, 52, 52, 52, 52, 52, 52, 51, 51, 52, 52, 52, 52, 52, 52, 52, 52,
+	52, 52, 52, 52, 52, 52, 52, 52, 52, 52, 52, 52, 52, 52, 52, 52, 52, 54,
+	54, 53, 53, 54, 53, 53, 53, 53, 53, 53, 53, 53, 53, 53, 54, 54, 54, 54,
+	54, 54, 54, 54, 54, 54, 54, 54, 54, 54, 54, 54, 54, 54, 54, 54, 54, 54,
+	54, 66, 66, 55, 56, 66, 57, 58, 60, 59, 61, 62, 63, 64, 65, 66, 66, 66,
+	66, 66, 66, 66, 66, 66, 66, 66, 66, 66, 66, 66, 66, 66, 66, 66, 66, 66,
+	66, 66, 66, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 67, 68, 69, 69,
+	69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69, 69,
+	69, 69, 69, 69, 69, 70, 75, 75, 75, 75, 75, 75, 75, 75, 75, 75, 75, 75,
+	75, 75, 72, 74, 73, 75, 75, 75, 75, 75, 75, 75, 75, 75, 75, 75, 75, 75,
+	75, 71, 75, 75, 75, 75, 75, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78,
+	78, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78, 78,
+	78, 77, 78, 76, 78, 78, 78, 78, 78, 82, 82, 82, 82, 82, 82, 82, 82, 82,
+	82, 82, 82, 82, 82, 82, 82, 82, 82, 82, 81, 82, 82, 82, 82, 80, 82, 79,
+	82, 82, 82, 82, 82, 82, 82, 82, 82, 82, 82
+    };
+
+}
@@ -0,0 +1,24 @@
+package MiniC.Parser;
+
+import MiniC.Scanner.Token;
+
+// A ParseListener that ignores everything; listeners override the
+// events they need.
+
+public class ParseAdapter implements ParseListener {
+
+    public void enterFunction(Token type, Token name) {}
+
+    public void exitFunction(Token name) {}
+
+    public void onDeclarator(int kind, Token type, Token name) {}
+
+    public void onArraySize(Token size) {}
+
+    public void enterStmt(int kind, Token token) {}
+
+    public void onExpr(int kind, Token token) {}
+
+    public void exitProgram() {}
+
+}
@@ -0,0 +1,45 @@
+package MiniC.Parser;
+
+import MiniC.Scanner.Token;
+
+// A ParseListener is told about the parts of a program while Parser
+// parses it, in source order, so that an analysis can run in the same
+// pass as other ones and without a tree (see Parser.discardTree()).
+// Kinds are the node kinds of MiniC.AstGen.Ast. Parts that contain a
+// syntax error may be reported only in part.
+//
+// Only Parser.parse() reports to listeners, and every event of a
+// function comes between its enterFunction() and exitFunction(). A
+// skeleton parse (Parser.enableSkeleton()) reports no events from
+// within function bodies. Parser.reparse() and parseFunctionBody()
+// reject a parser that has listeners, as their events would come
+// outside of any function.
+
+public interface ParseListener {
+
+    // a function, before its parameters and body
+    void enterFunction(Token type, Token name);
+
+    // the end of the function entered last, also after a syntax error
+    void exitFunction(Token name);
+
+    // a variable or parameter: kind is VARDECL or PARAMDECL
+    void onDeclarator(int kind, Token type, Token name);
+
+    // the size of the declarator reported last, if it is an array
+    void onArraySize(Token size);
+
+    // a statement, before its parts: kind is one of COMPOUNDSTMT to
+    // CALLSTMT, token its first token
+    void enterStmt(int kind, Token token);
+
+    // an expression: kind is one of BINARYEXPR to STRINGEXPR. Binary
+    // expressions come after their operands, the others before their
+    // parts. Missing operands are not reported.
+    void onExpr(int kind, Token token);
+
+    // the end of the program, after all other events, also when the
+    // parse gave up after too many errors
+    void exitProgram();
+
+}
@@ -1,21 +1,127 @@
 package MiniC.Parser;
 
 
+import MiniC.Scanner.Cancellation;
 import MiniC.Scanner.Token;
 import MiniC.Scanner.SourcePos;
 import MiniC.Parser.SyntaxError;
-import MiniC.Scanner.Scanner;
+import MiniC.Scanner.TokenBuffer;
+import MiniC.Scanner.TokenSource;
+import MiniC.Scanner.TokenStream;
+import MiniC.Scanner.TokenStreamReader;
 import MiniC.ErrorReporter;
+import MiniC.AstGen.Ast;
 
 public class Parser {
 
-    private Scanner scanner;
+    // number of tokens the TokenBuffer lets the parser peek past
+    // currentToken; the grammar is LL(1) so far, and the rest is
+    // there for rules that need more
+    static final int LOOKAHEAD = 3;
+
+    // parsing stops after this many reported syntax errors
+    static final int MAX_ERRORS = 50;
+
+    private TokenBuffer scanner;
     private ErrorReporter errorReporter;
     private Token currentToken;
+    private Ast ast;
+    private int nrErrors;
+    private int[] errorTokens = new int[8];	// stream index of each error
+    // set by a syntax error, cleared once a token has been accepted
+    private boolean recovering;
+    private boolean explicitStack;
+    private int[] frameNodes;	// statement stack of parseBodyIteratively()
+    private int[] frameKinds;
+    private int nrFrames;
+    private TokenSource source;
+    private java.util.concurrent.ForkJoinPool pool;	// set by enableParallel()
+    private Cancellation cancellation;	// of the parse a body parse works for
+    private FunctionBodies bodies;	// bodies parsed ahead during parse()
+    private int bodyRoot;		// result of parseBody()
+    private boolean skeleton;
+    // index of the "}" that ends each SKIPPEDBODY node
+    private java.util.HashMap<Integer, Integer> skippedEnds =
+	new java.util.HashMap<Integer, Integer>();
+    private ParseListener[] listeners = new ParseListener[0];
+    private Token lastType;	// token of the last TYPE node, for listeners
+    private boolean discardTree;
 
-    public Parser(Scanner lexer, ErrorReporter reporter) {
-    	scanner = lexer;
+    // lexer is either a Scanner or a reader over a TokenStream.
+    public Parser(TokenSource lexer, ErrorReporter reporter) {
+    	scanner = new TokenBuffer(lexer, LOOKAHEAD);
+    	source = lexer;
         errorReporter = reporter;
+        ast = new Ast();
+    }
+
+    // Parses function bodies with parseBodyIteratively(), so that
+    // statements can be nested deeper than the thread stack allows.
+    public void enableExplicitStack() {
+    	explicitStack = true;
+    }
+
+    // Parses the function bodies on pool while parse() goes through
+    // the declarations; see FunctionBodies. The lexer must be a
+    // TokenStreamReader at the start of its stream. Tree and messages
+    // are the same as those of a sequential parse.
+    public void enableParallel(java.util.concurrent.ForkJoinPool pool) {
+    	checkStreamSource("parallel");
+    	this.pool = pool;
+    }
+
+    // Makes the parse stop when cancellation is cancelled, not when the
+    // parsing thread is interrupted.
+    void cancelWith(Cancellation cancellation) {
+    	this.cancellation = cancellation;
+    }
+
+    // Makes parse() build a skeleton: function bodies are skipped by
+    // counting braces and stand in the tree as SKIPPEDBODY nodes, which
+    // parseFunctionBody() replaces by the parsed body when asked to.
+    // Errors in a body are reported when it is parsed. The lexer must
+    // be a TokenStreamReader at the start of its stream.
+    public void enableSkeleton() {
+    	checkStreamSource("skeleton");
+    	skeleton = true;
+    }
+
+    // Tells listener about what parse() finds, after the listeners
+    // added before it. Function bodies are then parsed in sequence,
+    // also with enableParallel(). Only parse() tells the listeners:
+    // reparse() and parseFunctionBody() are not for a parser that has
+    // any, as their events would come outside of enterFunction() and
+    // exitFunction().
+    public void addListener(ParseListener listener) {
+    	listeners = java.util.Arrays.copyOf(listeners, listeners.length + 1);
+    	listeners[listeners.length - 1] = listener;
+    }
+
+    // Makes parse() drop each toplevel declaration from the tree once
+    // the listeners have seen it, so that memory use does not grow
+    // with the program. getAst() is then left with the PROGRAM node,
+    // so reparse() and parseFunctionBody() cannot be used after it.
+    public void discardTree() {
+    	discardTree = true;
+    }
+
+    void checkStreamSource(String mode) {
+    	if (!(source instanceof TokenStreamReader)
+    	    || ((TokenStreamReader) source).position() != 0) {
+    		throw new IllegalStateException(mode + " parsing needs a TokenStreamReader at the start of its stream");
+    	}
+    }
+
+    void checkWholeTree(String method) {
+    	if (listeners.length != 0 || discardTree) {
+    		throw new IllegalStateException(method + " cannot be used with listeners or discardTree()");
+    	}
+    }
+
+    // The tree built by parse(). Constructs that contain a syntax
+    // error are left out of it.
+    public Ast getAst() {
+    	return ast;
     }
 
     // accept() checks whether the current token matches tokenExpected.
@@ -24,6 +130,7 @@ public class Parser {
     void accept (int tokenExpected) throws SyntaxError {
     	if (currentToken.kind == tokenExpected) {
     		currentToken = scanner.scan();
+    		recovering = false;
 		} else {
 		    syntaxError("\"%\" expected here", Token.spell(tokenExpected));
 		}
@@ -33,88 +140,191 @@ public class Parser {
     // and fetches the next token from the scanner.
     void acceptIt() {
     	currentToken = scanner.scan();
+    	recovering = false;
+    }
+
+    // checkCancelled() ends the parse with a CancellationException if
+    // the thread has been interrupted, which is how a compile server
+    // stops work that is no longer wanted. The parse methods call it
+    // once per declaration, statement and expression. A parser that
+    // FunctionBodies runs on a pool thread checks the Cancellation of
+    // the parse it works for instead.
+    void checkCancelled() {
+    	if (cancellation != null) {
+    		cancellation.check("parse cancelled");
+    	} else if (Thread.currentThread().isInterrupted()) {
+    		throw new java.util.concurrent.CancellationException("parse cancelled");
+    	}
     }
 
+    // Errors found before a token has been accepted since the last
+    // error are most likely caused by it, and are not reported.
     void syntaxError(String messageTemplate, String tokenQuoted) throws SyntaxError {
-		SourcePos pos = currentToken.GetSourcePos();
-		errorReporter.reportError(messageTemplate, tokenQuoted, pos);
-		throw(new SyntaxError());
+		if (!recovering) {
+		    SourcePos pos = currentToken.GetSourcePos();
+		    errorReporter.reportError(messageTemplate, tokenQuoted, pos);
+		    addErrorTokens(new int[] {currentToken.GetStreamIndex()}, 1);
+		    recovering = true;
+		}
+		throw(SyntaxError.SIGNAL);
     }
 
-    boolean isTypeSpecifier(int token) {
-    	if(token == Token.VOID ||
-           token == Token.INT  ||
-           token == Token.BOOL ||
-           token == Token.FLOAT) {
-    		return true;
-		} else {
-		    return false;
+    void addErrorTokens(int[] indexes, int n) {
+		if (nrErrors + n > errorTokens.length) {
+		    errorTokens = java.util.Arrays.copyOf(errorTokens, 2 * (nrErrors + n));
 		}
+		System.arraycopy(indexes, 0, errorTokens, nrErrors, n);
+		nrErrors += n;
     }
-    
+
+    ///////////////////////////////////////////////////////////////////////////////
+    //
+    // Error recovery (panic mode):
+    //
+    // A syntax error unwinds to the innermost declaration or statement
+    // loop, which skips tokens up to a synchronizing token and goes on
+    // with the next declaration or statement. Once MAX_ERRORS errors
+    // have been reported the error is passed on, and parse() gives up.
+    //
+    ///////////////////////////////////////////////////////////////////////////////
+
+    void recover(SyntaxError s) throws SyntaxError {
+    	if (nrErrors >= MAX_ERRORS) {
+    		throw s;
+    	}
+    }
+
+    // Skips the rest of a statement: up to and including ";", or up to
+    // "}", the start of a statement that cannot be an expression, or,
+    // inside declarations, a type specifier.
+    void skipStatement(boolean inDeclarations) {
+    	while (true) {
+    		switch (currentToken.kind) {
+    		case Token.SEMICOLON:
+    			// the broken statement ends here; report the next error
+    			acceptIt();
+    			return;
+    		case Token.RIGHTBRACE:
+    		case Token.LEFTBRACE:
+    		case Token.IF:
+    		case Token.WHILE:
+    		case Token.FOR:
+    		case Token.RETURN:
+    		case Token.EOF:
+    			return;
+    		default:
+    			if (inDeclarations && isTypeSpecifier(currentToken.kind)) {
+    				return;
+    			}
+    			currentToken = scanner.scan();
+    		}
+    	}
+    }
+
+    // Skips to the next type specifier outside of braces, where the
+    // next toplevel declaration can start.
+    void skipDeclaration() {
+    	int depth = 0;
+    	while (currentToken.kind != Token.EOF
+    	       && !(depth == 0 && isTypeSpecifier(currentToken.kind))) {
+    		if (currentToken.kind == Token.LEFTBRACE) {
+    			depth++;
+    		} else if (currentToken.kind == Token.RIGHTBRACE && depth > 0) {
+    			depth--;
+    		}
+    		currentToken = scanner.scan();
+    	}
+    }
+
+    // node() makes a node of the tree and tells the listeners about it.
+    int node(int kind, Token t) {
+    	int node = ast.node(kind, t);
+    	if (listeners.length != 0) {
+    		fire(kind, t);
+    	}
+    	return node;
+    }
+
+    void fire(int kind, Token t) {
+    	if (kind == Ast.TYPE) {
+    		lastType = t;
+    	} else if (kind == Ast.FUNDECL) {
+    		for (ParseListener l : listeners) {
+    			l.enterFunction(lastType, t);
+    		}
+    	} else if (kind == Ast.VARDECL || kind == Ast.PARAMDECL) {
+    		for (ParseListener l : listeners) {
+    			l.onDeclarator(kind, lastType, t);
+    		}
+    	} else if (kind == Ast.ARRAYSIZE) {
+    		for (ParseListener l : listeners) {
+    			l.onArraySize(t);
+    		}
+    	} else if (kind >= Ast.COMPOUNDSTMT && kind <= Ast.CALLSTMT) {
+    		for (ParseListener l : listeners) {
+    			l.enterStmt(kind, t);
+    		}
+    	} else if (kind >= Ast.BINARYEXPR && kind <= Ast.STRINGEXPR) {
+    		for (ParseListener l : listeners) {
+    			l.onExpr(kind, t);
+    		}
+    	}
+    }
+
+    // leaf() makes a node for the current token and accepts it.
+    int leaf(int kind) {
+    	int node = node(kind, currentToken);
+    	acceptIt();
+    	return node;
+    }
+
+    // empty() stands for an optional part that is absent.
+    int empty() {
+    	return node(Ast.EMPTY, null);
+    }
+
+    int binary(Token operator, int left, int right) {
+    	int node = node(Ast.BINARYEXPR, operator);
+    	ast.add(node, left);
+    	ast.add(node, right);
+    	return node;
+    }
+
+    // FIRST sets of the grammar in MiniC.grammar, as computed by
+    // LL1Generator.
+    boolean isTypeSpecifier(int token) {
+    	return LL1Parser.startsWith(LL1Tables.TYPE, token);
+    }
+
     boolean isExpr(int token) {
-    	if(token == Token.PLUS ||
-			token == Token.MINUS ||
-			token == Token.NOT ||
-			token == Token.ID ||
-			token == Token.LEFTPAREN ||
-			token == Token.INTLITERAL ||
-			token == Token.BOOLLITERAL ||
-			token == Token.FLOATLITERAL ||
-			token == Token.STRINGLITERAL) {
-			return true;
-		} else {
-			return false;
-		}
-	}
-    
+    	return LL1Parser.startsWith(LL1Tables.NEXPR, token);
+    }
+
     boolean isStmt(int token) {
-    	if(token == Token.LEFTBRACE ||
-    	   token == Token.IF ||
-    	   token == Token.WHILE ||
-    	   token == Token.FOR ||
-    	   token == Token.RETURN ||
-    	   token == Token.ID) {
-    		return true;
-    	} else {
-    		return false;
-    	}
+    	return LL1Parser.startsWith(LL1Tables.STMT, token);
     }
-    
+
     boolean isUnary(int token) {
-		if(token == Token.PLUS ||
-			token == Token.MINUS ||
-			token == Token.NOT)	{
-			return true;
-		} else {
-			return false;
-		}
-	}
-	
-	boolean isOP(int token) {
-		if(token == Token.PLUS ||
-			token == Token.MINUS ||
-			token == Token.OR ||
-			token == Token.AND ||
-			token == Token.TIMES ||
-			token == Token.DIV) {
-			return true;
-		} else {
-			return false;
-		}
-	}
-		
-	boolean isEqual(int token) {
-		if(token == Token.EQ ||
-			token == Token.NOTEQ ||
-			token == Token.LESS ||
-			token == Token.LESSEQ ||
-			token == Token.GREATER ||
-			token == Token.GREATEREQ) {
-			return true;
-		} else {
-			return false;
-		}
+    	return LL1Parser.startsWith(LL1Tables.UNOP, token);
+    }
+
+	// binaryPower[kind] is the binding power of a binary operator
+	// token, from || (weakest) to * and / (strongest), and 0 for all
+	// other tokens. All binary operators are left-associative.
+	static final int[] binaryPower = new int[Token.EOF + 1];
+	static {
+		binaryPower[Token.OR] = 1;
+		binaryPower[Token.AND] = 2;
+		binaryPower[Token.EQ] = 3;
+		binaryPower[Token.NOTEQ] = 3;
+		binaryPower[Token.LESS] = 4;
+		binaryPower[Token.LESSEQ] = 4;
+		binaryPower[Token.GREATER] = 4;
+		binaryPower[Token.GREATEREQ] = 4;
+		binaryPower[Token.PLUS] = 5;
+		binaryPower[Token.MINUS] = 5;
+		binaryPower[Token.TIMES] = 6;
+		binaryPower[Token.DIV] = 6;
 	}
 
     ///////////////////////////////////////////////////////////////////////////////
@@ -126,19 +336,253 @@ public class Parser {
     public void parse() {
 
 		currentToken = scanner.scan(); // get first token from scanner...
-	
+		ast = new Ast();
+		nrErrors = 0;
+		recovering = false;
+		skippedEnds.clear();
+		if (pool != null && !skeleton && listeners.length == 0) {
+		    bodies = new FunctionBodies(((TokenStreamReader) source).getTokens(),
+						errorReporter, explicitStack, pool);
+		}
+
 		try {
-		    parseProgram();
-		    if (currentToken.kind != Token.EOF) {
-			syntaxError("\"%\" not expected after end of program",
+		    int program = parseProgram();
+		    while (currentToken.kind != Token.EOF) {
+			try {
+			    syntaxError("\"%\" not expected after end of program",
 				       currentToken.GetLexeme());
+			} catch (SyntaxError s) {
+			    recover(s);
+			    skipDeclaration();
+			    parseDeclarations(program);
+			}
+		    }
+		}
+		catch (SyntaxError s) { /* too many errors */ }
+		finally {
+		    if (bodies != null) {
+			bodies.cancel();
+			bodies = null;
 		    }
 		}
-		catch (SyntaxError s) {return; /* to be refined in Assignment 3...*/ }
-		return;
+		for (ParseListener l : listeners) {
+		    l.exitProgram();
+		}
+    }
+
+    // Parses the compound statement at the start of the input as a
+    // function body, for FunctionBodies. bodyRoot is NONE if the parse
+    // gave up, or ran out of stack where the sequential parse might not.
+    void parseBody() {
+		currentToken = scanner.scan();
+		try {
+		    bodyRoot = explicitStack ? parseBodyIteratively() : parseCompoundStmt();
+		} catch (SyntaxError s) {
+		    bodyRoot = Ast.NONE;
+		} catch (StackOverflowError e) {
+		    bodyRoot = Ast.NONE;
+		}
+    }
+
+    // Skips the compound statement at the current token by counting
+    // braces on the token stream, and returns a SKIPPEDBODY node for it.
+    int skipBody() throws SyntaxError {
+		if (currentToken.kind != Token.LEFTBRACE) {
+		    accept(Token.LEFTBRACE);
+		}
+		int body = node(Ast.SKIPPEDBODY, currentToken);
+		TokenStream stream = ((TokenStreamReader) source).getTokens();
+		int last = stream.size() - 1;
+		int i = currentToken.GetStreamIndex();
+		int depth = 0;
+		for (; i < last; i++) {
+		    int kind = stream.kind(i);
+		    if (kind == Token.LEFTBRACE) {
+			depth++;
+		    } else if (kind == Token.RIGHTBRACE && --depth == 0) {
+			break;
+		    }
+		}
+		skippedEnds.put(body, i);
+		scanner.discardAhead();
+		((TokenStreamReader) source).seek(i);
+		currentToken = scanner.scan();
+		accept(Token.RIGHTBRACE);
+		return body;
+    }
+
+    // Parses the body of fun, a FUNDECL node, if a skeleton parse
+    // skipped it, and returns the body. The body is parsed from its
+    // "{" on as parse() would have done; its syntax errors are
+    // reported now. A body that gives up is left out as EMPTY. Throws
+    // IllegalStateException for a parser with listeners or after
+    // discardTree().
+    public int parseFunctionBody(int fun) {
+		checkWholeTree("parseFunctionBody()");
+		int skipped = ast.child(fun, 2);
+		if (ast.kind(skipped) != Ast.SKIPPEDBODY) {
+		    return skipped;
+		}
+		TokenStream stream = ((TokenStreamReader) source).getTokens();
+		Parser parser = new Parser(new TokenStreamReader(stream, ast.token(skipped).GetStreamIndex(),
+								 stream.size()), errorReporter);
+		parser.explicitStack = explicitStack;
+		parser.parseBody();
+		addErrorTokens(parser.errorTokens, parser.nrErrors);
+		int body = (parser.bodyRoot == Ast.NONE) ? empty() : ast.append(parser.ast, parser.bodyRoot);
+		ast.replaceChild(fun, skipped, body);
+		skippedEnds.remove(skipped);
+		return body;
+    }
+
+    // Index in the token stream of the "}" that ends a SKIPPEDBODY
+    // node, or of the EOF token if its braces do not match. Returns
+    // Ast.NONE for any other node, as for a body that has been parsed
+    // by parseFunctionBody() since.
+    public int skippedBodyEnd(int skipped) {
+		return skippedEnds.getOrDefault(skipped, Ast.NONE);
+    }
+
+    // Adds the body that FunctionBodies parsed from the current token
+    // to fun and moves past it. Returns false if there is none, or if
+    // it has to be parsed again in sequence.
+    boolean takeBody(int fun) {
+		Parser body = bodies.take(currentToken.GetStreamIndex());
+		if (body == null || body.bodyRoot == Ast.NONE
+		    || nrErrors + body.nrErrors >= MAX_ERRORS) {
+		    return false;
+		}
+		ast.add(fun, ast.append(body.ast, body.bodyRoot));
+		errorReporter.release(body.errorReporter);
+		addErrorTokens(body.errorTokens, body.nrErrors);
+		recovering = body.recovering;
+		// continue where the body parse stopped
+		scanner.discardAhead();
+		((TokenStreamReader) source).seek(body.currentToken.GetStreamIndex());
+		currentToken = scanner.scan();
+		return true;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////
+    //
+    // Incremental reparsing:
+    //
+    // After an edit of the token stream, only the innermost compound
+    // statement around the edit is parsed again, from its "{" on, and
+    // the rest of the tree is kept; its tokens move to the new stream
+    // lazily (Ast.moveTokens). The result is that of a full parse if
+    // no error was reported outside of the block and the new block
+    // ends at the old "}": then the parse up to the block and after it
+    // is the same as before. Otherwise the whole program is parsed
+    // again. Both need a parse from a TokenStream.
+    //
+    ///////////////////////////////////////////////////////////////////////////////
+
+    // Brings the tree up to date with an edit that replaced the tokens
+    // [firstChanged, oldChangedEnd) of the parsed stream by the tokens
+    // [firstChanged, newChangedEnd) of stream, as IncrementalScanner
+    // reports it. The errors of the part parsed again are reported.
+    // Returns the node that was parsed again: a COMPOUNDSTMT, or the
+    // root if the whole program was. Other node numbers from before
+    // may change, as the tree is compacted now and then. Throws
+    // IllegalStateException for a parser with listeners or after
+    // discardTree().
+    public int reparse(TokenStream stream, int firstChanged, int oldChangedEnd, int newChangedEnd) {
+		checkWholeTree("reparse()");
+		int shift = newChangedEnd - oldChangedEnd;
+		int[] found = enclosingBlock(firstChanged, oldChangedEnd);
+		source = new TokenStreamReader(stream, 0, stream.size());
+		scanner = new TokenBuffer(source, LOOKAHEAD);
+
+		if (found != null) {
+		    int parent = found[0];
+		    int block = found[1];
+		    int open = ast.streamIndex(block);
+		    int close = ast.endIndex(block);
+		    if (errorsWithin(open, close)) {
+			ast.moveTokens(stream, oldChangedEnd, shift);
+			Parser parser = new Parser(new TokenStreamReader(stream, open, stream.size()),
+						   errorReporter.hold());
+			parser.explicitStack = explicitStack;
+			parser.parseBody();
+			if (parser.bodyRoot != Ast.NONE
+			    && parser.ast.endIndex(parser.bodyRoot) == close + shift) {
+			    int copy = ast.append(parser.ast, parser.bodyRoot);
+			    ast.replaceChild(parent, block, copy);
+			    copy = compactTree(copy);
+			    errorReporter.release(parser.errorReporter);
+			    nrErrors = 0;
+			    addErrorTokens(parser.errorTokens, parser.nrErrors);
+			    return copy;
+			}
+		    }
+		}
+		parse();
+		return ast.root();
+    }
+
+    // Compacts the tree once the blocks that reparse() replaced take
+    // more room than the live nodes, so that a long series of edits
+    // does not make it grow without bound. Returns the new number of
+    // node.
+    int compactTree(int node) {
+		if (ast.deadNodes() <= ast.size() - ast.deadNodes()) {
+		    return node;
+		}
+		int[] map = ast.compact();
+		java.util.HashMap<Integer, Integer> ends = new java.util.HashMap<Integer, Integer>();
+		for (java.util.Map.Entry<Integer, Integer> e : skippedEnds.entrySet()) {
+		    if (map[e.getKey()] != Ast.NONE) {
+			ends.put(map[e.getKey()], e.getValue());
+		    }
+		}
+		skippedEnds = ends;
+		return map[node];
+    }
+
+    // The innermost compound statement whose braces enclose the tokens
+    // [first, end), as {parent, block}, or null. Statements come in
+    // source order and start with their token, so the search goes down
+    // into the last statement that starts before the edit.
+    int[] enclosingBlock(int first, int end) {
+		int[] found = null;
+		int n = ast.root();
+		while (n != Ast.NONE) {
+		    int next = Ast.NONE;
+		    for (int c = ast.firstChild(n); c != Ast.NONE; c = ast.nextSibling(c)) {
+			int kind = ast.kind(c);
+			if (kind == Ast.FUNDECL || kind == Ast.COMPOUNDSTMT || kind == Ast.IFSTMT
+			    || kind == Ast.WHILESTMT || kind == Ast.FORSTMT) {
+			    if (ast.streamIndex(c) >= first) {
+				break;
+			    }
+			    next = c;
+			}
+		    }
+		    if (next != Ast.NONE && ast.kind(next) == Ast.COMPOUNDSTMT) {
+			int close = ast.endIndex(next);
+			if (close == Ast.NONE || end > close) {
+			    break;
+			}
+			found = new int[] {n, next};
+		    }
+		    n = next;
+		}
+		return found;
+    }
+
+    // true if all errors of the last parse were reported inside the
+    // block from open to close, after its "{"
+    boolean errorsWithin(int open, int close) {
+		for (int i = 0; i < nrErrors; i++) {
+		    if (errorTokens[i] <= open || errorTokens[i] > close) {
+			return false;
+		    }
+		}
+		return true;
     }
 
-    
     ///////////////////////////////////////////////////////////////////////////////
     //
     // parseProgram():
@@ -147,15 +591,38 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 
-    public void parseProgram() throws SyntaxError {
+    public int parseProgram() throws SyntaxError {
+		int program = node(Ast.PROGRAM, null);
+		ast.setRoot(program);
+		parseDeclarations(program);
+		return program;
+    }
+
+    void parseDeclarations(int program) throws SyntaxError {
 		while (isTypeSpecifier(currentToken.kind)) {
-	        acceptIt();
+		  checkCancelled();
+		  try {
+	        int type = leaf(Ast.TYPE);
+		    Token id = currentToken;
 		    accept(Token.ID);
 		    if (currentToken.kind == Token.LEFTPAREN) {
-		    	parseFunPart();
+		    	try {
+		    		ast.add(program, parseFunPart(type, id));
+		    	} finally {
+		    		for (ParseListener l : listeners) {
+		    			l.exitFunction(id);
+		    		}
+		    	}
 		    } else {
-		    	parseVarPart();
+		    	parseVarPart(program, type, id);
 		    }
+		  } catch (SyntaxError s) {
+		    recover(s);
+		    skipDeclaration();
+		  }
+		  if (discardTree) {
+		    ast.truncate(program);
+		  }
 		}
     }
 
@@ -168,19 +635,35 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 
-    public void parseFunPart() throws SyntaxError {
+    public int parseFunPart(int type, Token id) throws SyntaxError {
+        int fun = node(Ast.FUNDECL, id);
+        int params = node(Ast.PARAMS, null);
+        ast.add(fun, type);
+        ast.add(fun, params);
         // We already know that the current token is "(".
         // Otherwise use accept() !
 		// "(" params-list? ")" compound-stmt
         acceptIt();
 		// params-list? ")" compound-stmt
         if (isTypeSpecifier(currentToken.kind)) {
-		    parseParamsList();
+		    parseParamsList(params);
 		}
         // ")" compound-stmt
 		accept(Token.RIGHTPAREN);
 		// compound-stmt
-		parseCompoundStmt();
+		if (skeleton) {
+		    ast.add(fun, skipBody());
+		    return fun;
+		}
+		if (bodies != null && takeBody(fun)) {
+		    return fun;
+		}
+		if (explicitStack) {
+		    ast.add(fun, parseBodyIteratively());
+		} else {
+		    ast.add(fun, parseCompoundStmt());
+		}
+		return fun;
     }
 
 
@@ -192,19 +675,19 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 
-    public void parseParamsList() throws SyntaxError {
+    public void parseParamsList(int params) throws SyntaxError {
     	// to be completed by you...
     	// ParamsDecl ( "," ParamsDecl ) *
-    	parseParameterDecl();
-    	
+    	ast.add(params, parseParameterDecl());
+
     	// ( "," ParamsDecl ) *
     	while (currentToken.kind == Token.COMMA) {
     		// "," ParamsDecl
     		acceptIt();
     		// ParamsDecl
-    		parseParameterDecl();
+    		ast.add(params, parseParameterDecl());
     	}
-    } 
+    }
 
     
     ///////////////////////////////////////////////////////////////////////////////
@@ -215,17 +698,18 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 
-    public void parseParameterDecl() throws SyntaxError {
+    public int parseParameterDecl() throws SyntaxError {
     	// to be completed by you...
-    	
+
     	// typespecifier declarator
     	if (isTypeSpecifier(currentToken.kind)) {
     		// typespecifier declarator
-    		acceptIt();
+    		int type = leaf(Ast.TYPE);
     		// declarator
-    		parseDeclarator();
+    		return parseDeclarator(Ast.PARAMDECL, type);
     	} else {
-    		throw(new SyntaxError());
+    		syntaxError("type expected here", "");
+    		return Ast.NONE;
     	}
     }
 
@@ -239,19 +723,31 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 
-    public void parseDeclarator() throws SyntaxError {
+    public int parseDeclarator(int kind, int type) throws SyntaxError {
     	// ID | ID "[" INTLITERAL "]"
+    	Token id = currentToken;
     	accept(Token.ID);
-    	
+    	int decl = node(kind, id);
+    	ast.add(decl, type);
+    	ast.add(decl, parseArraySize());
+    	return decl;
+    }
+
+    // ( "[" INTLITERAL "]" )?
+    int parseArraySize() throws SyntaxError {
     	//  | "[" INTLITERAL "]"
     	if (currentToken.kind == Token.LEFTBRACKET) {
     		// "[" INTLITERAL "]"
     		acceptIt();
     		// INTLITERAL "]"
+    		Token t = currentToken;
     		accept(Token.INTLITERAL);
+    		int size = node(Ast.ARRAYSIZE, t);
     		// "]"
     		accept(Token.RIGHTBRACKET);
+    		return size;
     	}
+    	return empty();
     }
     
     ///////////////////////////////////////////////////////////////////////////////
@@ -262,28 +758,58 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 
-    public void parseCompoundStmt() throws SyntaxError {
+    public int parseCompoundStmt() throws SyntaxError {
 		// to be completed by you...
 		// "{" variable-def* stmt* "}"
+		int block = node(Ast.COMPOUNDSTMT, currentToken);
 		accept(Token.LEFTBRACE);
-		
+
 		// variable-def* stmt* "}"
+		parseLocalDecls(block);
+		// stmt* "}"
+		while (currentToken.kind != Token.RIGHTBRACE
+		       && currentToken.kind != Token.EOF) {
+		  try {
+			if (isStmt(currentToken.kind)) {
+			    ast.add(block, parseStmt());
+			} else {
+			    strayInBlock();
+			}
+		  } catch (SyntaxError s) {
+			recover(s);
+			skipStatement(false);
+		  }
+		}
+
+		// "}"
+		Token close = currentToken;
+		accept(Token.RIGHTBRACE);
+		ast.setEnd(block, close);
+		return block;
+    }
+
+    // variable-def*, added to block
+    void parseLocalDecls(int block) throws SyntaxError {
 		// (Typespecifier ID variable-part)* stmt* "}"
 		while (isTypeSpecifier(currentToken.kind)) {
-			acceptIt();
+		  try {
+			int type = leaf(Ast.TYPE);
 			// ID variable-part)* stmt* "}"
+			Token id = currentToken;
 			accept(Token.ID);
 			// variable-part)* stmt* "}"
-			parseVarPart();
+			parseVarPart(block, type, id);
 			// )* stmt* "}"
+		  } catch (SyntaxError s) {
+			recover(s);
+			skipStatement(true);
+		  }
 		}
-		// stmt* "}"
-		while (isStmt(currentToken.kind)) {
-			// "}"
-			parseStmt();
-		}
-		
-		// "}"
+    }
+
+    // The current token is neither a statement nor the end of the
+    // block: report the missing "}"; the block goes on after recovery.
+    void strayInBlock() throws SyntaxError {
 		accept(Token.RIGHTBRACE);
     }
     
@@ -296,71 +822,85 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 	
-	public void parseStmt() throws SyntaxError {
+	public int parseStmt() throws SyntaxError {
+		checkCancelled();
 		switch (currentToken.kind) {
 		case Token.LEFTBRACE:
-			// “{” variable-def* stmt* “}” 
-			parseCompoundStmt();
-			break;
+			// “{” variable-def* stmt* “}”
+			return parseCompoundStmt();
 		case Token.IF:
 			// if “(” expr “)” stmt ( else stmt )?
-			parseIf();
-			break;
+			return parseIf();
 		case Token.WHILE:
 			// while “(“ expr “)” stmt
-			parseWhile();
-			break;
+			return parseWhile();
 		case Token.FOR:
 			// for “(“ asgnexpr? ”;” expr? “;” asgnexpr? “)” stmt
-			parseFor();
-			break;
+			return parseFor();
+		default:
+			return parseSimpleStmt();
+		}
+	}
+
+	// The statements that contain no other statement: return,
+	// assignments and calls. Any other token makes an EMPTY statement.
+	int parseSimpleStmt() throws SyntaxError {
+		int stmt;
+		switch (currentToken.kind) {
 		case Token.RETURN:
 			// return expr? ";"
-			acceptIt();
+			stmt = leaf(Ast.RETURNSTMT);
 			// expr? ";"
-			
+
 			if (isExpr(currentToken.kind)) {
 				// expr? ";"
-				parseExpr();
+				ast.add(stmt, parseExpr());
 				// ? ";"
+			} else {
+				ast.add(stmt, empty());
 			}
-			
+
 			// ";"
 			accept(Token.SEMICOLON);
-			break;
+			return stmt;
 		case Token.ID:
 			// ID "=" expr ";" | ID "[" expr "]" "=" expr ";" | ID arglist ";"
+			Token id = currentToken;
 			acceptIt();
 			// "=" expr ";" | "[" expr "]" "=" expr ";" | arglist ";"
-		
+
 			if (currentToken.kind == Token.ASSIGN) {
 				// "=" expr ";"
+				stmt = node(Ast.ASSIGNSTMT, id);
 				acceptIt();
 				// expr ";"
-				parseExpr();
+				ast.add(stmt, parseExpr());
 				// ";"
 				accept(Token.SEMICOLON);
 			} else if (currentToken.kind == Token.LEFTBRACKET) {
 				// "[" expr "]" "=" expr ";"
+				stmt = node(Ast.ARRAYASSIGNSTMT, id);
 				acceptIt();
 				// expr "]" "=" expr ";"
-				parseExpr();
+				ast.add(stmt, parseExpr());
 				// "]" "=" expr ";"
 				accept(Token.RIGHTBRACKET);
 				// "=" expr ";"
 				accept(Token.ASSIGN);
 				// expr ";"
-				parseExpr();
+				ast.add(stmt, parseExpr());
 				// ";"
 				accept(Token.SEMICOLON);
 			} else {
-				// “(“ args? “)” ; 
-				parseArglist();
+				// “(“ args? “)” ;
+				stmt = node(Ast.CALLSTMT, id);
+				parseArglist(stmt);
 				// ;
 				accept(Token.SEMICOLON);
 			}
-			break;
+			return stmt;
 		}
+		return empty();
 	}
 	
 
@@ -372,27 +912,34 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 	
-	public void parseIf() throws SyntaxError {
-		// if "(" expr ")" stmt (else stmt) ?
-		acceptIt();
-		// "(" expr ")" stmt (else stmt) ?
-		accept(Token.LEFTPAREN);
-		// expr ")" stmt (else stmt) ?
-		parseExpr();
-		// ")" stmt (else stmt) ?
-		accept(Token.RIGHTPAREN);
+	public int parseIf() throws SyntaxError {
+		int stmt = parseIfHead();
 		// stmt (else stmt) ?
-		parseStmt();
+		ast.add(stmt, parseStmt());
 		// (else stmt) ?
 		while (currentToken.kind == Token.ELSE) {
 			// (else stmt) ?
 			acceptIt();
 			// stmt) ?
-			parseStmt();
+			ast.add(stmt, parseStmt());
 			// ) ?
 		}
+		return stmt;
 	}
-	
+
+	// if "(" expr ")"
+	int parseIfHead() throws SyntaxError {
+		// if "(" expr ")" stmt (else stmt) ?
+		int stmt = leaf(Ast.IFSTMT);
+		// "(" expr ")" stmt (else stmt) ?
+		accept(Token.LEFTPAREN);
+		// expr ")" stmt (else stmt) ?
+		ast.add(stmt, parseExpr());
+		// ")" stmt (else stmt) ?
+		accept(Token.RIGHTPAREN);
+		return stmt;
+	}
+
     ///////////////////////////////////////////////////////////////////////////////
     //
     // parseWhile():
@@ -401,17 +948,24 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 	
-    public void parseWhile() throws SyntaxError {
+    public int parseWhile() throws SyntaxError {
+    	int stmt = parseWhileHead();
+    	// stmt
+    	ast.add(stmt, parseStmt());
+    	return stmt;
+    }
+
+    // while "(" expr ")"
+    int parseWhileHead() throws SyntaxError {
     	// while "(" expr ")" stmt
-    	acceptIt();
+    	int stmt = leaf(Ast.WHILESTMT);
     	// "(" expr ")" stmt
     	accept(Token.LEFTPAREN);
     	// expr ")" stmt
-    	parseExpr();
+    	ast.add(stmt, parseExpr());
     	// ")" stmt
     	accept(Token.RIGHTPAREN);
-    	// stmt
-    	parseStmt();
+    	return stmt;
     }
     
     ///////////////////////////////////////////////////////////////////////////////
@@ -422,35 +976,183 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////	
 	
-    public void parseFor() throws SyntaxError {
+    public int parseFor() throws SyntaxError {
+    	int stmt = parseForHead();
+    	// stmt
+    	ast.add(stmt, parseStmt());
+    	return stmt;
+    }
+
+    // for "(" asgnexpr? ";" expr? ";" asgnexpr ? ")"
+    int parseForHead() throws SyntaxError {
     	// for "(" asgnexpr? ";" expr? ";" asgnexpr ? ")" stmt
-    	acceptIt();
+    	int stmt = leaf(Ast.FORSTMT);
     	// "(" asgnexpr? ";" expr? ";" asgnexpr ? ")" stmt
     	accept(Token.LEFTPAREN);
     	// asgnexpr? ";" expr? ";" asgnexpr ? ")" stmt
-    	if (currentToken.kind == Token.ID) {
-    		acceptIt();
-    		accept(Token.ASSIGN);
-    		parseExpr();
-    	}
+    	ast.add(stmt, parseForAssign());
     	// ";" expr? ";" asgnexpr ? ")" stmt
     	accept(Token.SEMICOLON);
     	// expr? ";" asgnexpr ? ")" stmt
     	if (isExpr(currentToken.kind)) {
-    		parseExpr();
+    		ast.add(stmt, parseExpr());
+    	} else {
+    		ast.add(stmt, empty());
     	}
     	// ";" asgnexpr ? ")" stmt
     	accept(Token.SEMICOLON);
     	// asgnexpr ? ")" stmt
+    	ast.add(stmt, parseForAssign());
+    	// ")" stmt
+    	accept(Token.RIGHTPAREN);
+    	return stmt;
+    }
+
+    // asgnexpr?
+    int parseForAssign() throws SyntaxError {
     	if (currentToken.kind == Token.ID) {
-    		acceptIt();
+    		int assign = leaf(Ast.ASSIGNSTMT);
     		accept(Token.ASSIGN);
-    		parseExpr();
+    		ast.add(assign, parseExpr());
+    		return assign;
     	}
-    	// ")" stmt
-    	accept(Token.RIGHTPAREN);
-    	// stmt
-    	parseStmt();
+    	return empty();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////
+    //
+    // parseBodyIteratively():
+    //
+    // Parses a compound statement like parseCompoundStmt(), with the
+    // same tree, errors and recovery, but without recursion: every
+    // compound, if, while and for statement that is still open has a
+    // frame on frameNodes/frameKinds, which grow with the nesting depth.
+    // Only expressions are still parsed recursively.
+    //
+    ///////////////////////////////////////////////////////////////////////////////
+
+    // kinds of frames
+    static final int BLOCK_FRAME = 0;	// statements of a compound statement
+    static final int IF_FRAME = 1;	// the then or an else part
+    static final int LOOP_FRAME = 2;	// the body of a while or for
+
+    int parseBodyIteratively() throws SyntaxError {
+    	int done = Ast.NONE;	// a statement just completed
+    	boolean begin = false;	// a statement starts at currentToken
+    	boolean closing = false;	// accepting the "}" of the top block
+
+    	if (frameNodes == null) {
+    		frameNodes = new int[32];
+    		frameKinds = new int[32];
+    	}
+    	nrFrames = 0;
+    	int body = node(Ast.COMPOUNDSTMT, currentToken);
+    	accept(Token.LEFTBRACE);
+    	parseLocalDecls(body);
+    	pushFrame(body, BLOCK_FRAME);
+
+    	while (true) {
+    	  try {
+    		if (begin) {
+    			checkCancelled();
+    			begin = false;
+    			done = Ast.NONE;
+    			switch (currentToken.kind) {
+    			case Token.LEFTBRACE:
+    				int block = node(Ast.COMPOUNDSTMT, currentToken);
+    				acceptIt();
+    				pushFrame(block, BLOCK_FRAME);
+    				parseLocalDecls(block);
+    				continue;
+    			case Token.IF:
+    				pushFrame(parseIfHead(), IF_FRAME);
+    				begin = true;
+    				continue;
+    			case Token.WHILE:
+    				pushFrame(parseWhileHead(), LOOP_FRAME);
+    				begin = true;
+    				continue;
+    			case Token.FOR:
+    				pushFrame(parseForHead(), LOOP_FRAME);
+    				begin = true;
+    				continue;
+    			default:
+    				done = parseSimpleStmt();
+    			}
+    		}
+
+    		int node = frameNodes[nrFrames - 1];
+    		switch (frameKinds[nrFrames - 1]) {
+    		case IF_FRAME:
+    			ast.add(node, done);
+    			// (else stmt) ?
+    			if (currentToken.kind == Token.ELSE) {
+    				acceptIt();
+    				begin = true;
+    			} else {
+    				nrFrames--;
+    				done = node;
+    			}
+    			break;
+    		case LOOP_FRAME:
+    			ast.add(node, done);
+    			nrFrames--;
+    			done = node;
+    			break;
+    		default:
+    			if (done != Ast.NONE) {
+    				ast.add(node, done);
+    				done = Ast.NONE;
+    			}
+    			if (currentToken.kind == Token.RIGHTBRACE
+    			    || currentToken.kind == Token.EOF) {
+    				closing = true;
+    				Token close = currentToken;
+    				accept(Token.RIGHTBRACE);
+    				ast.setEnd(node, close);
+    				closing = false;
+    				nrFrames--;
+    				if (nrFrames == 0) {
+    					return node;
+    				}
+    				done = node;
+    			} else if (isStmt(currentToken.kind)) {
+    				begin = true;
+    			} else {
+    				strayInBlock();
+    			}
+    		}
+    	  } catch (SyntaxError s) {
+    		// Like the exception in the recursive parser, the error
+    		// abandons all statements up to the innermost block that
+    		// contains it; a block whose "}" is missing is abandoned too.
+    		if (closing) {
+    			closing = false;
+    			nrFrames--;
+    		}
+    		while (nrFrames > 0 && frameKinds[nrFrames - 1] != BLOCK_FRAME) {
+    			nrFrames--;
+    		}
+    		if (nrFrames == 0) {
+    			throw s;
+    		}
+    		recover(s);
+    		skipStatement(false);
+    		begin = false;
+    		done = Ast.NONE;
+    	  }
+    	}
+    }
+
+    void pushFrame(int node, int kind) {
+    	if (nrFrames == frameNodes.length) {
+    		frameNodes = java.util.Arrays.copyOf(frameNodes, 2 * nrFrames);
+    		frameKinds = java.util.Arrays.copyOf(frameKinds, 2 * nrFrames);
+    	}
+    	frameNodes[nrFrames] = node;
+    	frameKinds[nrFrames] = kind;
+    	nrFrames++;
     }
 
     
@@ -463,13 +1165,14 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 	
-    public void parseArglist() throws SyntaxError {
+    // The arguments become the children of call.
+    public void parseArglist(int call) throws SyntaxError {
     	accept(Token.LEFTPAREN);
     	if (isExpr(currentToken.kind)) {
-    		parseExpr();
+    		ast.add(call, parseExpr());
     		while (currentToken.kind == Token.COMMA) {
     			acceptIt();
-    			parseExpr();
+    			ast.add(call, parseExpr());
     		}
     	}
     	accept(Token.RIGHTPAREN);
@@ -483,30 +1186,30 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 
-    public void parseVarPart() throws SyntaxError {
+    // Adds one VARDECL per declared variable to parent; type and id
+    // are those of the first variable, which have been parsed already.
+    public void parseVarPart(int parent, int type, Token id) throws SyntaxError {
 	// to be completed by you...
-    	if (currentToken.kind == Token.LEFTBRACKET) {
-    		// ( "[" INTLITERAL "]" )?  ( "=" initializer ) ? ( "," init_decl)* ";"
-    		acceptIt();
-    		// INTLITERAL "]" )?  ( "=" initializer ) ? ( "," init_decl)* ";"
-    		accept(Token.INTLITERAL);
-    		// "]" )?  ( "=" initializer ) ? ( "," init_decl)* ";"
-    		accept(Token.RIGHTBRACKET);
-    		// ( "=" initializer ) ? ( "," init_decl)* ";"
-    	}
-    	
+    	int decl = node(Ast.VARDECL, id);
+    	ast.add(parent, decl);
+    	ast.add(decl, type);
+    	// ( "[" INTLITERAL "]" )?  ( "=" initializer ) ? ( "," init_decl)* ";"
+    	ast.add(decl, parseArraySize());
+
     	if (currentToken.kind == Token.ASSIGN) {
     		// ( "=" initializer ) ? ( "," init_decl)* ";"
     		acceptIt();
     		// initializer ) ? ( "," init_decl)* ";"
-    		parseInitializer();
+    		ast.add(decl, parseInitializer());
+    	} else {
+    		ast.add(decl, empty());
     	}
-    	
+
     	while (currentToken.kind == Token.COMMA) {
     		// ( "," init_decl)* ";"
     		acceptIt();
     		// init_decl)* ";"
-    		parseInitDecl();
+    		ast.add(parent, parseInitDecl(node(Ast.TYPE, ast.token(type))));
     		// ";"
     	}
     	// ";"
@@ -523,27 +1226,29 @@ public class Parser {
 	//
 	///////////////////////////////////////////////////////////////////////////////
 	
-	public void parseInitializer() throws SyntaxError {
-		
+	public int parseInitializer() throws SyntaxError {
+
 		if (isExpr(currentToken.kind)) {
 			// expr
-			parseExpr();
+			return parseExpr();
 		} else if (currentToken.kind == Token.LEFTBRACE) {
-			// “{“ expr ( “,” expr )*  “}” 
-			acceptIt();
+			// “{“ expr ( “,” expr )*  “}”
+			int list = leaf(Ast.INITLIST);
 			// expr ( “,” expr )*  “}”
-			parseExpr();
+			ast.add(list, parseExpr());
 			// ( “,” expr )*  “}”
 			while (currentToken.kind == Token.COMMA) {
 				acceptIt();
 				//  expr )*  “}”
-				parseExpr();
+				ast.add(list, parseExpr());
 				// “}”
 			}
 			// “}”
 			accept(Token.RIGHTBRACE);
+			return list;
 		} else {
-			throw(new SyntaxError());
+			syntaxError("\"%\" expected here", Token.spell(Token.LEFTBRACE));
+			return Ast.NONE;
 		}
 		
 		/*
@@ -571,16 +1276,19 @@ public class Parser {
 	//
 	///////////////////////////////////////////////////////////////////////////////
 	
-	public void parseInitDecl() throws SyntaxError {
-		// declarator (“=” initializer)? 
-		parseDeclarator();
+	public int parseInitDecl(int type) throws SyntaxError {
+		// declarator (“=” initializer)?
+		int decl = parseDeclarator(Ast.VARDECL, type);
 		// (“=” initializer)?
 		if (currentToken.kind == Token.ASSIGN) {
 			// (“=” initializer)?
 			acceptIt();
 			// initializer)?
-			parseInitializer();
+			ast.add(decl, parseInitializer());
+		} else {
+			ast.add(decl, empty());
 		}
+		return decl;
 	}
 	
 	
@@ -588,24 +1296,31 @@ public class Parser {
 	//
 	// parseExpr():
 	//
+	// expr ::= unary-expr ( binary-op unary-expr )*
+	//
+	// by precedence climbing over binaryPower. Each loop iteration
+	// adds one operand, and the recursion only goes one level deeper
+	// per stronger precedence level, so long operand chains need no
+	// stack.
 	//
 	///////////////////////////////////////////////////////////////////////////////
-	
-	public void parseExpr() throws SyntaxError {
-		parseTerminalExpr();
-		while (isOP(currentToken.kind)) {
-			acceptIt();
-			parseTerminalExpr();
-		}
-		
-		if(isEqual(currentToken.kind)) {
+
+	public int parseExpr() throws SyntaxError {
+		return parseExpr(1);
+	}
+
+	// Parses an expression whose binary operators bind at least with
+	// minPower.
+	int parseExpr(int minPower) throws SyntaxError {
+		checkCancelled();
+		int expr = parseTerminalExpr();
+		int power;
+		while ((power = binaryPower[currentToken.kind]) >= minPower) {
+			Token op = currentToken;
 			acceptIt();
-			parseExpr();
-			while (isOP(currentToken.kind)) {
-				acceptIt();
-				parseTerminalExpr();
-			}
+			expr = binary(op, expr, parseExpr(power + 1));
 		}
+		return expr;
 	}
 	
 	
@@ -619,44 +1334,60 @@ public class Parser {
     //
     ///////////////////////////////////////////////////////////////////////////////
 	
-    public void parseTerminalExpr() throws SyntaxError {
+    public int parseTerminalExpr() throws SyntaxError {
+    	int outer = Ast.NONE, inner = Ast.NONE, expr;
     	while (isUnary(currentToken.kind)) {
-    		acceptIt();
+    		int unary = leaf(Ast.UNARYEXPR);
+    		if (outer == Ast.NONE) {
+    			outer = unary;
+    		} else {
+    			ast.add(inner, unary);
+    		}
+    		inner = unary;
     	}
-    	
+
     	switch (currentToken.kind) {
     	case Token.ID:
+    		Token id = currentToken;
     		acceptIt();
     		if (currentToken.kind == Token.LEFTPAREN) {
-    			acceptIt();
-    			if (isExpr(currentToken.kind)) {
-    				parseExpr();
-    				while (currentToken.kind == Token.COMMA) {
-    					acceptIt();
-    					parseExpr();
-    				}
-    			}
-    			accept(Token.RIGHTPAREN);
+    			expr = node(Ast.CALLEXPR, id);
+    			parseArglist(expr);
     		} else if (currentToken.kind == Token.LEFTBRACKET) {
+    			expr = node(Ast.ARRAYEXPR, id);
     			acceptIt();
-    			parseExpr();
+    			ast.add(expr, parseExpr());
     			accept(Token.RIGHTBRACKET);
+    		} else {
+    			expr = node(Ast.IDEXPR, id);
     		}
     		break;
     	case Token.LEFTPAREN:
     		acceptIt();
-    		parseExpr();
+    		expr = parseExpr();
     		accept(Token.RIGHTPAREN);
     		break;
     	case Token.BOOLLITERAL:
+    		expr = leaf(Ast.BOOLEXPR);
+    		break;
     	case Token.INTLITERAL:
+    		expr = leaf(Ast.INTEXPR);
+    		break;
     	case Token.FLOATLITERAL:
+    		expr = leaf(Ast.FLOATEXPR);
+    		break;
     	case Token.STRINGLITERAL:
-    		acceptIt();
+    		expr = leaf(Ast.STRINGEXPR);
     		break;
     	default:
     		//throw(new SyntaxError());
+    		expr = empty();
     		break;
     	}
+    	if (outer == Ast.NONE) {
+    		return expr;
+    	}
+    	ast.add(inner, expr);
+    	return outer;
     }
 }
@@ -1,15 +1,22 @@
 package MiniC.Parser;
 
+// A SyntaxError only unwinds the parser to its recovery point; the
+// error has been reported by then. It therefore carries no stack
+// trace, and the parser throws the one preallocated instance SIGNAL,
+// so that an error costs no more than the unwinding itself.
+
 class SyntaxError extends Exception {
 
+  static final SyntaxError SIGNAL = new SyntaxError();
+
   SyntaxError()
   {
-    super();
+    super(null, null, false, false);
   };
 
   SyntaxError (String s)
   {
-    super(s);
+    super(s, null, false, false);
   }
 
   public static final long serialVersionUID = 3L;
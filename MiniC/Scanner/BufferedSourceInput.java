@@ -0,0 +1,32 @@
+package MiniC.Scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads the whole file into one heap buffer with a few large reads
+// instead of one read() call per character.
+
+public class BufferedSourceInput implements SourceInput {
+
+  public ByteBuffer load (java.io.File file) throws java.io.IOException {
+    java.io.FileInputStream in = new java.io.FileInputStream(file);
+    try {
+       FileChannel channel = in.getChannel();
+       long size = channel.size();
+       if (size > Integer.MAX_VALUE) {
+          throw new java.io.IOException(file + " is too large to buffer");
+       }
+       ByteBuffer buffer = ByteBuffer.allocate((int) size);
+       while (buffer.hasRemaining()) {
+          if (channel.read(buffer) == -1) {
+             break;
+          }
+       }
+       buffer.flip();
+       return buffer;
+    } finally {
+       in.close();
+    }
+  }
+
+}
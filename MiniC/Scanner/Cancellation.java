@@ -0,0 +1,40 @@
+package MiniC.Scanner;
+
+import java.util.concurrent.CancellationException;
+
+// A Cancellation lets work that runs on other threads, such as the
+// fork-join tasks of ParallelScanner and of the parser's function
+// bodies, stop with the thread it is done for. It is cancelled once
+// that thread, the one that made it, is seen to be interrupted, or
+// once cancel() is called; after that it stays cancelled, even when
+// the owner's interrupt is cleared for its next piece of work.
+
+public final class Cancellation {
+
+  private Thread owner;
+  private volatile boolean cancelled;
+
+  public Cancellation() {
+    owner = Thread.currentThread();
+  }
+
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    if (!cancelled && owner.isInterrupted()) {
+       cancelled = true;
+    }
+    return cancelled;
+  }
+
+  // Throws a CancellationException with the given message if the work
+  // is no longer wanted.
+  public void check(String message) {
+    if (isCancelled()) {
+       throw new CancellationException(message);
+    }
+  }
+
+}
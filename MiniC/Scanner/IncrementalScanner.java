@@ -0,0 +1,182 @@
+package MiniC.Scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenStream;
+
+// IncrementalScanner keeps the TokenStream of an edited buffer up to
+// date. For each edit it re-lexes from the last token boundary before
+// the edit, only until a new token starts where an old token (moved by
+// the size of the edit) starts again; the old tokens from there on
+// are reused with shifted offsets.
+//
+// The text, the token arrays and the LineIndex are gap buffers whose
+// gaps follow the edits (see TokenStream), and the offsets after a gap
+// are counted from the end of the text. An edit therefore touches only
+// the bytes, tokens and lines between its gap and the previous one,
+// and no offset after it: its cost is proportional to the edit and to
+// its distance from the previous edit, not to the file.
+//
+// After each edit, the tokens [firstChanged(), newChangedEnd()) of the
+// stream replace the tokens [firstChanged(), oldChangedEnd()) it had
+// before; all other tokens are unchanged apart from their offsets.
+
+public class IncrementalScanner {
+
+  // The scanner reads at most this many bytes past the end of a token
+  // before it decides where the token ends ("1e+5" against "1e+x").
+  private static final int LOOKAHEAD = 3;
+
+  private TokenStream tokens;
+  private ScannerContext context;
+  private LineIndex lines;
+  private byte[] text;		// the source, with a gap at [gap, gapEnd)
+  private ByteBuffer buffer;	// wraps text
+  private int gap, gapEnd;
+  private int firstChanged, oldChangedEnd, newChangedEnd;
+
+  // Edits a copy of tokens and of its source; tokens itself is left
+  // as it is.
+  public IncrementalScanner (TokenStream tokens, ScannerContext context) {
+    this.context = context;
+    ByteBuffer source = tokens.getSource().duplicate();
+    int length = source.limit();
+    text = new byte[length + length / 8 + 256];
+    source.position(0);
+    source.get(text, 0, length);
+    gap = length;
+    gapEnd = text.length;
+    lines = new LineIndex(ByteBuffer.wrap(text, 0, length));
+    lines.build();	// while the text has no gap
+    buffer = ByteBuffer.wrap(text);
+    this.tokens = new TokenStream(buffer, lines, tokens.size() + 16);
+    this.tokens.append(tokens, 0, tokens.size());
+    this.tokens.setSource(buffer, gap, length);
+  }
+
+  // The stream that edit() updates. Tokens and positions taken from
+  // it before an edit do not apply after it.
+  public TokenStream getTokens() {
+    return tokens;
+  }
+
+  // Replaces the removed bytes at offset by inserted (encoded as UTF-8)
+  // and returns the token stream of the edited source.
+  public TokenStream edit (int offset, int removed, String inserted) {
+    return edit(offset, removed, inserted.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public TokenStream edit (int offset, int removed, byte[] inserted) {
+    TokenStream stream = tokens;
+    int length = text.length - (gapEnd - gap);
+    if (offset < 0 || removed < 0 || offset + removed > length) {
+       throw new IndexOutOfBoundsException("edit " + offset + "+" + removed
+                                           + " outside of source");
+    }
+    int shift = inserted.length - removed;
+    int editEnd = offset + inserted.length;
+
+    // Tokens whose scan read nothing at or after offset are kept.
+    int kept = keptTokens(stream, offset);
+    int restart = (kept == 0) ? 0 : stream.start(kept - 1) + stream.length(kept - 1);
+    stream.moveGap(kept);
+    moveGap(restart);
+    replace(offset, removed, inserted);
+    stream.setSource(buffer, gap, length + shift);
+    lines.edit(offset, removed, inserted);
+
+    // Re-lex the text past the gap into a stream of its own. Old
+    // tokens from kept on are past the gap too, so their offsets
+    // already take the edit into account.
+    int behind = gapEnd - gap;	// offset in buffer - offset in the text
+    TokenStream scanned = new TokenStream(buffer, lines, 16);
+    Scanner scanner = new Scanner(buffer, lines, gapEnd, context);
+    scanner.keepMessagesIn(scanned);
+    int m = kept;
+    while (true) {
+       int start = scanner.nextTokenStart() - behind;
+       if (!scanner.atEnd() && start >= editEnd) {
+          while (m < stream.size() && stream.start(m) < start) {
+             m++;
+          }
+          if (m < stream.size() && stream.start(m) == start
+              && stream.kind(m) != Token.EOF) {
+             break;
+          }
+       }
+       if (scanner.scanInto(scanned) == Token.EOF) {
+          m = stream.size();
+          break;
+       }
+    }
+    stream.replace(m, scanned);
+    firstChanged = kept;
+    oldChangedEnd = m;
+    newChangedEnd = kept + scanned.size();
+    return stream;
+  }
+
+  // Number of leading tokens of stream that end, with the scanner's
+  // lookahead, before offset. Token ends grow with the index, so this
+  // is a binary search.
+  private static int keptTokens (TokenStream stream, int offset) {
+    int low = 0;
+    int high = stream.size() - 1;	// the EOF token is never kept
+    while (low < high) {
+       int mid = (low + high) >>> 1;
+       if (stream.start(mid) + stream.length(mid) + LOOKAHEAD <= offset) {
+          low = mid + 1;
+       } else {
+          high = mid;
+       }
+    }
+    return low;
+  }
+
+  // Moves the gap in text to offset to.
+  private void moveGap (int to) {
+    if (to < gap) {
+       System.arraycopy(text, to, text, gapEnd - (gap - to), gap - to);
+       gapEnd -= gap - to;
+    } else if (to > gap) {
+       System.arraycopy(text, gapEnd, text, gap, to - gap);
+       gapEnd += to - gap;
+    }
+    gap = to;
+  }
+
+  // Replaces the removed bytes at offset, which is past the gap, by
+  // inserted. The text after them stays where it is in the buffer,
+  // and the text between the gap and offset moves.
+  private void replace (int offset, int removed, byte[] inserted) {
+    int shift = inserted.length - removed;
+    if (gapEnd - gap < shift) {
+       int tail = text.length - gapEnd;
+       byte[] bigger = new byte[Math.max(2 * text.length, gap + shift + tail + 256)];
+       System.arraycopy(text, 0, bigger, 0, gap);
+       System.arraycopy(text, gapEnd, bigger, bigger.length - tail, tail);
+       gapEnd = bigger.length - tail;
+       text = bigger;
+       buffer = ByteBuffer.wrap(text);
+    }
+    int before = offset - gap;	// bytes between the gap and the edit
+    System.arraycopy(text, gapEnd, text, gapEnd - shift, before);
+    gapEnd -= shift;
+    System.arraycopy(inserted, 0, text, gapEnd + before, inserted.length);
+  }
+
+  public int firstChanged() {
+    return firstChanged;
+  }
+
+  public int oldChangedEnd() {
+    return oldChangedEnd;
+  }
+
+  public int newChangedEnd() {
+    return newChangedEnd;
+  }
+
+}
@@ -0,0 +1,147 @@
+package MiniC.Scanner;
+
+import java.nio.ByteBuffer;
+
+import MiniC.Scanner.SourcePos;
+
+// A LineIndex maps byte offsets in a source buffer to line and column
+// numbers (both starting at 1). The table of line starts is built by
+// one pass over the buffer the first time a position is resolved;
+// lookups are a binary search in that table.
+//
+// IncrementalScanner keeps the table up to date with its edits. Like
+// a TokenStream, the table is then a gap buffer: the line starts
+// [split, nrLines) are at its end and counted from the end of the
+// source, so only the lines of an edit are touched.
+
+public class LineIndex {
+
+  private ByteBuffer source;
+  private volatile int[] lineStarts;
+  private int nrLines;
+  private int split;		// line starts from here on are at the end
+  private int length;		// of the source
+
+  public LineIndex (ByteBuffer source) {
+    this.source = source;
+    length = source.limit();
+  }
+
+  synchronized void build() {
+    if (lineStarts != null) {
+       return;
+    }
+    int[] table = new int[64];
+    int n = 1;
+    int limit = source.limit();
+    table[0] = 0;
+    for (int p = 0; p < limit; p++) {
+       if (source.get(p) == '\n') {
+          if (n == table.length) {
+             table = java.util.Arrays.copyOf(table, 2 * n);
+          }
+          table[n++] = p + 1;
+       }
+    }
+    nrLines = n;
+    split = n;
+    lineStarts = table;
+  }
+
+  // offset of the start of line k, counted from 0
+  private int lineStart (int[] table, int k) {
+    return (k < split) ? table[k] : table[k + table.length - nrLines] + length;
+  }
+
+  // Returns the 0-based index of the line containing offset.
+  private int lineIndexOf (int offset) {
+    if (lineStarts == null) {
+       build();
+    }
+    int[] table = lineStarts;
+    int low = 0;
+    int high = nrLines - 1;
+    while (low < high) {
+       int mid = (low + high + 1) >>> 1;
+       if (lineStart(table, mid) <= offset) {
+          low = mid;
+       } else {
+          high = mid - 1;
+       }
+    }
+    return low;
+  }
+
+  public int line (int offset) {
+    return lineIndexOf(offset) + 1;
+  }
+
+  public int column (int offset) {
+    int line = lineIndexOf(offset);	// builds lineStarts
+    return offset - lineStart(lineStarts, line) + 1;
+  }
+
+  // Builds the line/column view of the token at [start, start + length).
+  // As in the scanner, EndLine is the line the token starts on and
+  // EndCol the column of its last character.
+  public SourcePos sourcePos (int start, int length) {
+    int last = length == 0 ? start : start + length - 1;
+    SourcePos pos = new SourcePos();
+    pos.StartLine = line(start);
+    pos.EndLine = pos.StartLine;
+    pos.StartCol = column(start);
+    pos.EndCol = column(last);
+    return pos;
+  }
+
+  // For IncrementalScanner: brings the table up to date with an edit
+  // that replaced the bytes [offset, offset + removed) by inserted.
+  // It must have been built before the source had a gap.
+  void edit (int offset, int removed, byte[] inserted) {
+    int first = lineIndexOf(offset) + 1;	// the first line start after offset
+    moveGap(first);
+    int[] table = lineStarts;
+    int gone = 0;
+    while (first + gone < nrLines && lineStart(table, first + gone) <= offset + removed) {
+       gone++;
+    }
+    int added = 0;
+    for (int i = 0; i < inserted.length; i++) {
+       if (inserted[i] == '\n') {
+          added++;
+       }
+    }
+    int tail = nrLines - first - gone;
+    if (table.length - first - tail < added) {
+       int[] bigger = new int[Math.max(2 * table.length, first + added + tail + 64)];
+       System.arraycopy(table, 0, bigger, 0, first);
+       System.arraycopy(table, table.length - tail, bigger, bigger.length - tail, tail);
+       table = bigger;
+    }
+    for (int i = 0; i < inserted.length; i++) {
+       if (inserted[i] == '\n') {
+          table[split++] = offset + i + 1;
+       }
+    }
+    nrLines = split + tail;
+    length += inserted.length - removed;
+    lineStarts = table;
+  }
+
+  // Makes the line starts [0, k) the ones at the start of the table.
+  private void moveGap (int k) {
+    int[] table = lineStarts;
+    int gap = table.length - nrLines;
+    if (k < split) {
+       for (int j = split - 1; j >= k; j--) {
+          table[j + gap] = table[j] - length;
+       }
+    } else {
+       for (int j = split; j < k; j++) {
+          table[j] = table[j + gap] + length;
+       }
+    }
+    split = k;
+  }
+
+}
@@ -0,0 +1,26 @@
+package MiniC.Scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Maps the file into memory, so large sources are paged in by the OS
+// rather than copied onto the heap. The mapping stays valid after
+// the channel is closed.
+
+public class MappedSourceInput implements SourceInput {
+
+  public ByteBuffer load (java.io.File file) throws java.io.IOException {
+    java.io.FileInputStream in = new java.io.FileInputStream(file);
+    try {
+       FileChannel channel = in.getChannel();
+       long size = channel.size();
+       if (size > Integer.MAX_VALUE) {
+          throw new java.io.IOException(file + " is too large to map");
+       }
+       return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } finally {
+       in.close();
+    }
+  }
+
+}
@@ -0,0 +1,245 @@
+package MiniC.Scanner;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenStream;
+
+// ParallelScanner lexes one large source file on a fork-join pool.
+//
+// The input is cut into chunks that end at a newline, and every chunk
+// is scanned as if it started outside of any comment or string. Between
+// two tokens the scanner's only state is its offset, so a chunk scan is
+// correct from the first token that starts where the sequential scan
+// would start a token. Stitching walks the chunks in order, keeps the
+// speculative tokens from that point on, and re-lexes the head of a
+// chunk that started inside a comment or string until the two line up.
+// The result is the same TokenStream that Scanner.scanAll() produces.
+//
+// The chunks are scanned on pool threads, which do not see an
+// interrupt of the thread that called scanAll(). They check a
+// Cancellation instead, which that thread cancels when it is
+// interrupted while it waits for them, so a cancelled compilation
+// stops them too.
+
+public class ParallelScanner {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  private static final int AT_END = Integer.MAX_VALUE;
+
+  private ByteBuffer buffer;
+  private LineIndex lines;
+  private ScannerContext context;
+  private int chunkSize;
+  private Cancellation cancellation;	// of the scanAll() in progress
+
+  public ParallelScanner (SourceFile source, ScannerContext context) {
+    this(source, context, DEFAULT_CHUNK_SIZE);
+  }
+
+  public ParallelScanner (SourceFile source, ScannerContext context, int chunkSize) {
+    this.buffer = source.getBuffer();
+    this.lines = new LineIndex(buffer);
+    this.context = context;
+    this.chunkSize = chunkSize;
+  }
+
+  public TokenStream scanAll() {
+    return scanAll(ForkJoinPool.commonPool());
+  }
+
+  public TokenStream scanAll(ForkJoinPool pool) {
+    int[] bounds = chunkBounds();
+    int nrChunks = bounds.length - 1;
+    TokenStream[] chunks = new TokenStream[nrChunks];
+    int[] exits = new int[nrChunks];
+
+    cancellation = new Cancellation();
+    ChunkScan scan = new ChunkScan(bounds, chunks, exits, 0, nrChunks);
+    pool.execute(scan);
+    try {
+       // unlike invoke(), get() does not hold back an interrupt
+       scan.get();
+    } catch (InterruptedException e) {
+       cancellation.cancel();
+       Thread.currentThread().interrupt();
+       throw new java.util.concurrent.CancellationException("scan cancelled");
+    } catch (java.util.concurrent.ExecutionException e) {
+       cancellation.cancel();
+       if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+       }
+       throw (RuntimeException) e.getCause();
+    }
+    TokenStream stream = stitch(bounds, chunks, exits);
+    report(stream);
+    return stream;
+  }
+
+  // Chunk i covers [bounds[i], bounds[i + 1]); every bound but the
+  // last one follows a newline.
+  private int[] chunkBounds() {
+    int limit = buffer.limit();
+    int[] bounds = new int[limit / chunkSize + 2];
+    int n = 0;
+    int pos = 0;
+    bounds[n++] = 0;
+    while (pos + chunkSize < limit) {
+       pos += chunkSize;
+       while (pos < limit && buffer.get(pos - 1) != '\n') {
+          pos++;
+       }
+       if (pos < limit) {
+          bounds[n++] = pos;
+       }
+    }
+    bounds[n++] = limit;
+    return java.util.Arrays.copyOf(bounds, n);
+  }
+
+  // Scans the tokens that start before end into stream. Returns the
+  // offset of the first token at or after end, or AT_END once the EOF
+  // token has been scanned.
+  private static int scanRange (Scanner scanner, TokenStream stream, int end) {
+    while (true) {
+       scanner.checkCancelled();
+       int start = scanner.nextTokenStart();
+       if (start >= end && !scanner.atEnd()) {
+          return start;
+       }
+       if (scanner.scanInto(stream) == Token.EOF) {
+          return AT_END;
+       }
+    }
+  }
+
+  private class ChunkScan extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private int[] bounds;
+    private TokenStream[] chunks;
+    private int[] exits;
+    private int low, high;
+
+    ChunkScan (int[] bounds, TokenStream[] chunks, int[] exits, int low, int high) {
+      this.bounds = bounds;
+      this.chunks = chunks;
+      this.exits = exits;
+      this.low = low;
+      this.high = high;
+    }
+
+    protected void compute() {
+      if (high - low > 1) {
+         int mid = (low + high) >>> 1;
+         invokeAll(new ChunkScan(bounds, chunks, exits, low, mid),
+                   new ChunkScan(bounds, chunks, exits, mid, high));
+         return;
+      }
+      int end = bounds[low + 1];
+      TokenStream stream = new TokenStream(buffer, lines, (end - bounds[low]) / 4 + 16);
+      Scanner scanner = new Scanner(buffer, lines, bounds[low], context);
+      scanner.keepMessagesIn(stream);
+      scanner.cancelWith(cancellation);
+      exits[low] = scanRange(scanner, stream, end);
+      chunks[low] = stream;
+    }
+
+  }
+
+  private TokenStream stitch (int[] bounds, TokenStream[] chunks, int[] exits) {
+    TokenStream stream = new TokenStream(buffer, lines, buffer.limit() / 4 + 16);
+    int resume;
+
+    // the first chunk starts where the sequential scan does
+    stream.append(chunks[0], 0, chunks[0].size());
+    resume = exits[0];
+
+    for (int i = 1; i < chunks.length && resume != AT_END; i++) {
+       cancellation.check("scan cancelled");
+       if (resume >= bounds[i + 1]) {
+          continue;	// the whole chunk lies inside one comment or token
+       }
+       TokenStream chunk = chunks[i];
+       int k = 0;
+       while (k < chunk.size() && chunk.start(k) < resume) {
+          k++;
+       }
+       if (k < chunk.size() && chunk.start(k) == resume) {
+          stream.append(chunk, k, chunk.size());
+          resume = exits[i];
+       } else {
+          resume = rescan(stream, chunk, resume, bounds[i + 1], exits[i]);
+       }
+    }
+    return stream;
+  }
+
+  // Re-lexes chunk from resume, a token start of the sequential scan,
+  // until a token starts at the same offset as one of the speculative
+  // tokens, and appends the result to stream. Returns the new resume
+  // offset.
+  private int rescan (TokenStream stream, TokenStream chunk, int resume,
+                      int end, int exit) {
+    Scanner scanner = new Scanner(buffer, lines, resume, context);
+    TokenStream redone = new TokenStream(buffer, lines, 16);
+    int k = 0;
+    int next;
+    boolean linedUp = false;
+
+    scanner.keepMessagesIn(redone);
+    while (true) {
+       scanner.checkCancelled();
+       int start = scanner.nextTokenStart();
+       if (!scanner.atEnd()) {
+          if (start >= end) {
+             next = start;
+             break;
+          }
+          while (k < chunk.size() && chunk.start(k) < start) {
+             k++;
+          }
+          if (k < chunk.size() && chunk.start(k) == start) {
+             linedUp = true;
+             next = exit;
+             break;
+          }
+       }
+       if (scanner.scanInto(redone) == Token.EOF) {
+          next = AT_END;
+          break;
+       }
+    }
+    stream.append(redone, 0, redone.size());
+    if (linedUp) {
+       stream.append(chunk, k, chunk.size());
+    }
+    return next;
+  }
+
+  // Prints the scanner messages, and the tokens if debugging is on,
+  // in the order a sequential scan would have printed them.
+  private void report (TokenStream stream) {
+    java.io.PrintStream out = context.getOut();
+    int m = 0;
+
+    if (!context.isDebugging()) {
+       for (m = 0; m < stream.nrMessages(); m++) {
+          out.println(stream.message(m));
+       }
+       return;
+    }
+    for (int i = 0; i < stream.size(); i++) {
+       while (m < stream.nrMessages() && stream.messageToken(m) == i) {
+          out.println(stream.message(m));
+          m++;
+       }
+       new Token(stream, i).print(out);
+    }
+  }
+
+}
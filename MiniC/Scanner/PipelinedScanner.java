@@ -0,0 +1,176 @@
+package MiniC.Scanner;
+
+import java.util.concurrent.locks.LockSupport;
+
+// PipelinedScanner runs a Scanner on a thread of its own, so that
+// lexing overlaps with the parser that reads the tokens.
+//
+// The scanner thread puts its tokens into a ring of power-of-two size
+// that has one writer and one reader, and needs no lock: each side
+// owns its own index and makes it visible to the other through a
+// volatile field only once per batch of tokens, or at EOF and when it
+// has to wait. A side that finds the ring full or empty spins
+// briefly, then parks for short periods until the other side moves.
+//
+// What the scanner prints (error messages, and the tokens when
+// debugging is on) is kept with the token it was printed for and
+// printed when scan() delivers that token, on the reading thread. The
+// output is therefore the same as that of a Scanner that the parser
+// calls directly. Tokens are numbered from 1.
+
+public class PipelinedScanner implements TokenSource {
+
+  public static final int DEFAULT_CAPACITY = 1 << 12;
+
+  // number of tokens a side moves before it publishes its index
+  private static final int BATCH = 64;
+
+  private Scanner scanner;
+  private java.io.ByteArrayOutputStream printed;
+  private java.io.PrintStream out;
+  private Thread thread;
+
+  private Token[] ring;
+  private String[] output;	// what was printed with each token, or null
+  private int mask;
+
+  // tokens put into the ring; written by the scanner thread only
+  private volatile long published;
+  // tokens taken from the ring; written by the reader only
+  private volatile long consumed;
+  private volatile boolean closed;
+  private volatile Throwable failure;
+
+  // the reader's state
+  private long head;		// number of tokens taken
+  private long available;	// value of published last seen
+  private Token eof;
+
+  public PipelinedScanner (SourceFile source, ScannerContext context) {
+    this(source, context, DEFAULT_CAPACITY);
+  }
+
+  public PipelinedScanner (SourceFile source, ScannerContext context, int capacity) {
+    int size = 2 * BATCH;
+    while (size < capacity) {
+       size <<= 1;
+    }
+    ring = new Token[size];
+    output = new String[size];
+    mask = size - 1;
+    out = context.getOut();
+    printed = new java.io.ByteArrayOutputStream();
+    ScannerContext scanning = new ScannerContext(new java.io.PrintStream(printed, true));
+    if (context.isDebugging()) {
+       scanning.enableDebugging();
+    }
+    scanner = new Scanner(source, scanning);
+  }
+
+  // Starts the scanner thread. Returns this.
+  public PipelinedScanner start() {
+    thread = new Thread(new Runnable() {
+       public void run() {
+          produce();
+       }
+    }, "MiniC scanner");
+    thread.setDaemon(true);
+    thread.start();
+    return this;
+  }
+
+  // Stops the scanner thread if it is still running, for a reader
+  // that does not read up to EOF. The thread sees this at the end of
+  // its current batch.
+  public void close() {
+    closed = true;
+    if (thread != null) {
+       LockSupport.unpark(thread);
+    }
+  }
+
+  private void produce() {
+    long tail = 0;
+    long free = ring.length;	// tail may go up to this without looking
+    try {
+       while (true) {
+          if (tail == free) {
+             published = tail;
+             int round = 0;
+             while ((free = consumed + ring.length) == tail) {
+                if (closed) {
+                   return;
+                }
+                backOff(round++);
+             }
+          }
+          Token t = scanner.scan();
+          int slot = (int) tail & mask;
+          ring[slot] = t;
+          if (printed.size() > 0) {
+             output[slot] = printed.toString();
+             printed.reset();
+          } else {
+             output[slot] = null;
+          }
+          tail++;
+          if (t.kind == Token.EOF) {
+             published = tail;
+             return;
+          }
+          if ((tail & (BATCH - 1)) == 0) {
+             published = tail;
+             if (closed) {
+                return;
+             }
+          }
+       }
+    } catch (Throwable e) {
+       failure = e;
+       published = tail;
+    }
+  }
+
+  public Token scan() {
+    if (eof != null) {
+       return eof;
+    }
+    if (head == available) {
+       consumed = head;
+       int round = 0;
+       while ((available = published) == head) {
+          if (failure != null) {
+             throw new IllegalStateException("scanner thread failed", failure);
+          }
+          backOff(round++);
+       }
+    }
+    int slot = (int) head & mask;
+    Token t = ring[slot];
+    if (output[slot] != null) {
+       out.print(output[slot]);
+    }
+    head++;
+    if ((head & (BATCH - 1)) == 0) {
+       consumed = head;
+    }
+    if (t.kind == Token.EOF) {
+       eof = t;
+       consumed = head;
+    }
+    return t;
+  }
+
+  // Waits a little longer in every round, without holding a CPU once
+  // the other side is seen to take a while.
+  private static void backOff (int round) {
+    if (round < 100) {
+       Thread.onSpinWait();
+    } else if (round < 200) {
+       Thread.yield();
+    } else {
+       LockSupport.parkNanos(50000);
+    }
+  }
+
+}
@@ -0,0 +1,66 @@
+package MiniC.Scanner;
+
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenDump;
+import MiniC.Scanner.TokenStream;
+import MiniC.Scanner.TokenStreamReader;
+
+// A ReplayScanner feeds the tokens of a recorded TokenDump to the
+// parser. The dump is read completely when the ReplayScanner is built,
+// so parsing from it involves neither the scanner nor file I/O.
+// rewind() starts over, for repeated parser runs on the same input.
+//
+// The scanner messages recorded in the dump are printed as their
+// tokens are delivered, which is when the scanner printed them.
+
+public class ReplayScanner extends TokenStreamReader {
+
+  private java.io.PrintStream out;
+  private int nextMessage;	// the first message not printed yet
+
+  public ReplayScanner (String dumpFile) throws java.io.IOException {
+    this(TokenDump.read(dumpFile), new ScannerContext());
+  }
+
+  public ReplayScanner (String dumpFile, ScannerContext context) throws java.io.IOException {
+    this(TokenDump.read(dumpFile), context);
+  }
+
+  public ReplayScanner (TokenStream stream) {
+    this(stream, new ScannerContext());
+  }
+
+  public ReplayScanner (TokenStream stream, ScannerContext context) {
+    super(stream, 0, stream.size());
+    out = context.getOut();
+  }
+
+  public Token scan() {
+    TokenStream stream = getTokens();
+    int i = position();
+    while (nextMessage < stream.nrMessages() && stream.messageToken(nextMessage) <= i) {
+       out.println(stream.message(nextMessage));
+       nextMessage++;
+    }
+    return super.scan();
+  }
+
+  public void rewind() {
+    super.rewind();
+    nextMessage = 0;
+  }
+
+  // Messages of tokens skipped by a seek forward are printed with the
+  // next token; a seek back prints the messages from there on again.
+  public void seek (int index) {
+    if (index < position()) {
+       TokenStream stream = getTokens();
+       nextMessage = 0;
+       while (nextMessage < stream.nrMessages() && stream.messageToken(nextMessage) < index) {
+          nextMessage++;
+       }
+    }
+    super.seek(index);
+  }
+
+}
@@ -0,0 +1,498 @@
+package MiniC.Scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import MiniC.Scanner.LineIndex;
+import MiniC.Scanner.SourceFile;
+import MiniC.Scanner.Token;
+
+// The scanner works directly on the bytes of the source buffer.
+// Bytes are classified through a 256-entry table; a lexeme is only
+// turned into a String once the token is complete, and only string
+// literals are decoded as UTF-8. Tokens record their offset range;
+// lines and columns (counting bytes) are resolved by the LineIndex
+// only when a SourcePos is asked for.
+
+public final class Scanner implements TokenSource {
+
+  private static final int EOT = 0;
+
+  // character classes:
+  private static final byte OTHER	= 0,
+                            LETTER	= 1,
+                            DIGIT	= 2,
+                            BLANK	= 3,
+                            NEWLINE	= 4,
+                            END		= 5;
+
+  private static final byte[] charClass = new byte[256];
+
+  static {
+    for (int c = 'a'; c <= 'z'; c++) {
+       charClass[c] = LETTER;
+    }
+    for (int c = 'A'; c <= 'Z'; c++) {
+       charClass[c] = LETTER;
+    }
+    charClass['_'] = LETTER;
+    for (int c = '0'; c <= '9'; c++) {
+       charClass[c] = DIGIT;
+    }
+    charClass[' '] = BLANK;
+    charClass['\t'] = BLANK;
+    charClass['\r'] = BLANK;
+    charClass['\f'] = BLANK;
+    charClass['\n'] = NEWLINE;
+    charClass[EOT] = END;
+  }
+
+  private ByteBuffer buffer;
+  private int limit;
+  private int currentPos;	// buffer index of currentChar
+  private int currentChar;	// unsigned byte value, EOT at end of input
+  private LineIndex lines;
+  private int tokenStart;	// buffer index of the first lexeme byte
+  private int tokenEnd;		// buffer index after the last lexeme byte
+  private ScannerContext context;
+  private byte[] lexemeBytes;
+  private TokenStream messageSink;	// if set, messages are kept with tokens
+  private Cancellation cancellation;	// if set, checked instead of the thread
+
+  private boolean isLetter(int c) {
+    return charClass[c] == LETTER;
+  }
+
+  private boolean isDigit(int c) {
+    return charClass[c] == DIGIT;
+  }
+
+  public Scanner(SourceFile source) {
+    this(source, new ScannerContext());
+  }
+
+  public Scanner(SourceFile source, ScannerContext context) {
+    this.context = context;
+    buffer = source.getBuffer();
+    limit = buffer.limit();
+    currentPos = buffer.position();
+    currentChar = charAt(currentPos);
+    lines = new LineIndex(buffer);
+    lexemeBytes = new byte[64];
+  }
+
+  // Scans the part of buffer that starts at offset from, with a given
+  // LineIndex. Used by ParallelScanner, whose chunk scanners share one
+  // LineIndex, and by IncrementalScanner, which restarts after an edit.
+  Scanner(ByteBuffer buffer, LineIndex lines, int from, ScannerContext context) {
+    this.context = context;
+    this.buffer = buffer;
+    this.lines = lines;
+    limit = buffer.limit();
+    currentPos = from;
+    currentChar = charAt(currentPos);
+    lexemeBytes = new byte[64];
+  }
+
+  public void enableDebugging() {
+    context.enableDebugging();
+  }
+
+  public ScannerContext getContext() {
+    return context;
+  }
+
+  private int charAt(int pos) {
+    if (pos < limit) {
+       return buffer.get(pos) & 0xff;
+    }
+    return EOT;
+  }
+
+  // Prints a scanner error message, or records it with the token being
+  // scanned if messages go to a TokenStream.
+  private void message(String text) {
+    if (messageSink != null) {
+       messageSink.addMessage(messageSink.size(), text);
+    } else {
+       context.getOut().println(text);
+    }
+  }
+
+  // takeIt() consumes currentChar and fetches the next one.
+  // EOT is never consumed, so the scanner stays at end of input.
+  private void takeIt() {
+    if (currentChar == EOT) {
+       return;
+    }
+    currentPos++;
+    currentChar = charAt(currentPos);
+  }
+
+  private void scanWhitespace() {
+    while (true) {
+       int cls = charClass[currentChar];
+       if (cls == BLANK || cls == NEWLINE) {
+          takeIt();
+       } else if (currentChar == '/' && charAt(currentPos + 1) == '*') {
+          takeIt();
+          takeIt();
+          while (!(currentChar == '*' && charAt(currentPos + 1) == '/')) {
+             if (currentChar == EOT) {
+                message("ERROR: unterminated multi-line comment.");
+                return;
+             }
+             takeIt();
+          }
+          takeIt();
+          takeIt();
+       } else if (currentChar == '/' && charAt(currentPos + 1) == '/') {
+          while (currentChar != '\n' && currentChar != EOT) {
+             takeIt();
+          }
+       } else {
+          return;
+       }
+    }
+  }
+
+  // Consumes an exponent ( "e" | "E" ) ( "+" | "-" )? digit+ if one
+  // follows; otherwise nothing is taken.
+  private boolean scanExponent() {
+    if (currentChar != 'e' && currentChar != 'E') {
+       return false;
+    }
+    int next = charAt(currentPos + 1);
+    int digitPos = currentPos + 1;
+    if (next == '+' || next == '-') {
+       digitPos++;
+    }
+    if (!isDigit(charAt(digitPos))) {
+       return false;
+    }
+    while (currentPos < digitPos) {
+       takeIt();
+    }
+    while (isDigit(currentChar)) {
+       takeIt();
+    }
+    return true;
+  }
+
+  private void scanString() {
+    while (true) {
+       if (currentChar == '"') {
+          tokenEnd = currentPos;
+          takeIt();
+          return;
+       }
+       if (currentChar == '\n' || currentChar == EOT) {
+          message("ERROR: unterminated string literal");
+          tokenEnd = currentPos;
+          return;
+       }
+       if (currentChar == '\\') {
+          takeIt();
+          if (currentChar != 'n') {
+             message("ERROR: illegal escape sequence");
+          }
+       }
+       takeIt();
+    }
+  }
+
+  private int scanToken() {
+    tokenStart = currentPos;
+    switch (charClass[currentChar]) {
+    case LETTER:
+       takeIt();
+       while (isLetter(currentChar) || isDigit(currentChar)) {
+          takeIt();
+       }
+       return Token.ID;
+    case DIGIT:
+       takeIt();
+       while (isDigit(currentChar)) {
+          takeIt();
+       }
+       if (currentChar == '.') {
+          takeIt();
+          while (isDigit(currentChar)) {
+             takeIt();
+          }
+          scanExponent();
+          return Token.FLOATLITERAL;
+       }
+       if (scanExponent()) {
+          return Token.FLOATLITERAL;
+       }
+       return Token.INTLITERAL;
+    case END:
+       return Token.EOF;
+    }
+    switch (currentChar) {
+    case '.':
+       takeIt();
+       if (!isDigit(currentChar)) {
+          return Token.ERROR;
+       }
+       while (isDigit(currentChar)) {
+          takeIt();
+       }
+       scanExponent();
+       return Token.FLOATLITERAL;
+    case '"':
+       takeIt();
+       tokenStart = currentPos;
+       scanString();
+       return Token.STRINGLITERAL;
+    case '=':
+       takeIt();
+       if (currentChar == '=') {
+          takeIt();
+          return Token.EQ;
+       }
+       return Token.ASSIGN;
+    case '!':
+       takeIt();
+       if (currentChar == '=') {
+          takeIt();
+          return Token.NOTEQ;
+       }
+       return Token.NOT;
+    case '<':
+       takeIt();
+       if (currentChar == '=') {
+          takeIt();
+          return Token.LESSEQ;
+       }
+       return Token.LESS;
+    case '>':
+       takeIt();
+       if (currentChar == '=') {
+          takeIt();
+          return Token.GREATEREQ;
+       }
+       return Token.GREATER;
+    case '|':
+       takeIt();
+       if (currentChar == '|') {
+          takeIt();
+          return Token.OR;
+       }
+       return Token.ERROR;
+    case '&':
+       takeIt();
+       if (currentChar == '&') {
+          takeIt();
+          return Token.AND;
+       }
+       return Token.ERROR;
+    case '+':
+       takeIt();
+       return Token.PLUS;
+    case '-':
+       takeIt();
+       return Token.MINUS;
+    case '*':
+       takeIt();
+       return Token.TIMES;
+    case '/':
+       takeIt();
+       return Token.DIV;
+    case '{':
+       takeIt();
+       return Token.LEFTBRACE;
+    case '}':
+       takeIt();
+       return Token.RIGHTBRACE;
+    case '[':
+       takeIt();
+       return Token.LEFTBRACKET;
+    case ']':
+       takeIt();
+       return Token.RIGHTBRACKET;
+    case '(':
+       takeIt();
+       return Token.LEFTPAREN;
+    case ')':
+       takeIt();
+       return Token.RIGHTPAREN;
+    case ',':
+       takeIt();
+       return Token.COMMA;
+    case ';':
+       takeIt();
+       return Token.SEMICOLON;
+    default:
+       takeIt();
+       return Token.ERROR;
+    }
+  }
+
+  private boolean isBoolLiteral() {
+    int length = tokenEnd - tokenStart;
+    if (length == 4) {
+       return matches("true");
+    } else if (length == 5) {
+       return matches("false");
+    }
+    return false;
+  }
+
+  private boolean matches(String word) {
+    for (int i = 0; i < word.length(); i++) {
+       if (buffer.get(tokenStart + i) != word.charAt(i)) {
+          return false;
+       }
+    }
+    return true;
+  }
+
+  // Builds the lexeme String for the bytes [tokenStart, tokenEnd).
+  // Tokens with a fixed spelling share the constant from Token.
+  private String lexeme(int kind) {
+    switch (kind) {
+    case Token.ID:
+    case Token.BOOLLITERAL:
+    case Token.INTLITERAL:
+    case Token.FLOATLITERAL:
+    case Token.ERROR:
+       return decode(StandardCharsets.ISO_8859_1);
+    case Token.STRINGLITERAL:
+       return decode(StandardCharsets.UTF_8);
+    case Token.EOF:
+       return "$";
+    default:
+       return Token.spell(kind);
+    }
+  }
+
+  private String decode(java.nio.charset.Charset charset) {
+    int length = tokenEnd - tokenStart;
+    if (buffer.hasArray()) {
+       return new String(buffer.array(), buffer.arrayOffset() + tokenStart,
+                         length, charset);
+    }
+    if (length > lexemeBytes.length) {
+       lexemeBytes = new byte[Math.max(length, 2 * lexemeBytes.length)];
+    }
+    for (int i = 0; i < length; i++) {
+       lexemeBytes[i] = buffer.get(tokenStart + i);
+    }
+    return new String(lexemeBytes, 0, length, charset);
+  }
+
+  // Tells keywords and boolean literals from identifiers.
+  private int resolveKind(int kind) {
+    if (kind == Token.ID) {
+       kind = Token.keywordKind(buffer, tokenStart, tokenEnd - tokenStart);
+       if (kind == Token.ID && isBoolLiteral()) {
+          kind = Token.BOOLLITERAL;
+       }
+    }
+    return kind;
+  }
+
+  // Scanning stops with a CancellationException once the thread has
+  // been interrupted, so that a compilation can be cancelled. A scanner
+  // that works for another thread checks its Cancellation instead.
+  void checkCancelled() {
+    if (cancellation != null) {
+       cancellation.check("scan cancelled");
+    } else if (Thread.currentThread().isInterrupted()) {
+       throw new java.util.concurrent.CancellationException("scan cancelled");
+    }
+  }
+
+  public Token scan() {
+    Token currentToken;
+    int start, kind;
+
+    checkCancelled();
+    scanWhitespace();
+    start = currentPos;
+    kind = scanToken();
+    if (kind != Token.STRINGLITERAL) {
+       tokenEnd = currentPos;
+    }
+    kind = resolveKind(kind);
+    currentToken = new Token(kind, lexeme(kind), lines, start, currentPos - start,
+                             context.nextTokenNr());
+    if (context.isDebugging()) {
+       currentToken.print(context.getOut());
+    }
+    return currentToken;
+  }
+
+  // scanAll() scans the rest of the input into a TokenStream. No Token,
+  // SourcePos or lexeme String is created; the stream keeps the kind
+  // and the byte range of every token, up to and including EOF.
+  public TokenStream scanAll() {
+    return scanAll(new TokenStream(buffer, lines, (limit - currentPos) / 4 + 16));
+  }
+
+  // recordAll() is scanAll() for a stream that is kept for later, as in
+  // a token dump: scanner messages are recorded in the stream with the
+  // token they belong to instead of being printed.
+  public TokenStream recordAll() {
+    TokenStream stream = new TokenStream(buffer, lines, (limit - currentPos) / 4 + 16);
+    keepMessagesIn(stream);
+    try {
+       return scanAll(stream);
+    } finally {
+       messageSink = null;
+    }
+  }
+
+  private TokenStream scanAll(TokenStream stream) {
+    int kind;
+
+    do {
+       checkCancelled();
+       scanWhitespace();
+       kind = scanInto(stream);
+       if (context.isDebugging()) {
+          new Token(stream, stream.size() - 1).print(context.getOut());
+       }
+    } while (kind != Token.EOF);
+    return stream;
+  }
+
+  // The following are the steps of scanAll() for ParallelScanner.
+
+  // Skips whitespace and comments and returns the offset of the next
+  // token, which is the EOF token if atEnd().
+  int nextTokenStart() {
+    scanWhitespace();
+    return currentPos;
+  }
+
+  boolean atEnd() {
+    return currentChar == EOT;
+  }
+
+  // Scans the token at the current position into stream.
+  int scanInto(TokenStream stream) {
+    int start = currentPos;
+    int kind = scanToken();
+    if (kind != Token.STRINGLITERAL) {
+       tokenEnd = currentPos;
+    }
+    stream.add(resolveKind(kind), start, currentPos - start);
+    return kind;
+  }
+
+  // From now on scanner messages are recorded in stream, with the
+  // index of the token they belong to, instead of being printed.
+  void keepMessagesIn(TokenStream stream) {
+    messageSink = stream;
+  }
+
+  // From now on scanning stops when cancellation is cancelled, not
+  // when the scanning thread is interrupted.
+  void cancelWith(Cancellation cancellation) {
+    this.cancellation = cancellation;
+  }
+
+}
@@ -0,0 +1,48 @@
+package MiniC.Scanner;
+
+// Scanning state that belongs to one compilation rather than to the
+// Token class: the running token number, the debug flag and the
+// stream scanner messages are printed to. Every
+// Scanner works in its own context unless one is passed in, so
+// scanners for different files can run on different threads and
+// still number their tokens 1, 2, 3, ... deterministically.
+//
+// A context is meant to be used by one thread at a time.
+
+public class ScannerContext {
+
+  private int nrTokens;
+  private boolean debugging;
+  private java.io.PrintStream out;
+
+  public ScannerContext() {
+    this(System.out);
+  }
+
+  public ScannerContext(java.io.PrintStream out) {
+    nrTokens = 0;
+    debugging = false;
+    this.out = out;
+  }
+
+  int nextTokenNr() {
+    return ++nrTokens;
+  }
+
+  public int getNrTokens() {
+    return nrTokens;
+  }
+
+  public void enableDebugging() {
+    debugging = true;
+  }
+
+  public boolean isDebugging() {
+    return debugging;
+  }
+
+  public java.io.PrintStream getOut() {
+    return out;
+  }
+
+}
@@ -2,32 +2,63 @@ package MiniC.Scanner;
 
 public class SourceFile {
 
+  // Files of at least MAP_THRESHOLD bytes are memory-mapped,
+  // smaller ones are read into a heap buffer.
+  public static final long MAP_THRESHOLD = 1L << 20;
+
   java.io.File source_file;
-  java.io.FileInputStream source;
+  java.nio.ByteBuffer source;
   final char EOL = '\n';
   final char EOT = '\u0000';
 
   public SourceFile (String filename) {
+    this(filename, null);
+  }
+
+  public SourceFile (String filename, SourceInput input) {
     try {
        source_file = new java.io.File(filename);
-       source = new java.io.FileInputStream(source_file);
+       if (input == null) {
+          input = selectInput(source_file.length());
+       }
+       source = input.load(source_file);
     } catch (java.io.IOException e) {
        source_file = null;
        source = null;
     }
   }
 
+  // false if the file could not be read; the buffer is empty then
+  public boolean isOpen() {
+    return source != null;
+  }
+
+  public static SourceInput selectInput (long size) {
+    if (size >= MAP_THRESHOLD) {
+       return new MappedSourceInput();
+    } else {
+       return new BufferedSourceInput();
+    }
+  }
+
+  // getBuffer() gives the scanner direct access to all source bytes,
+  // independent of the characters already consumed by readChar().
+  public java.nio.ByteBuffer getBuffer()
+  {
+     if (source == null) {
+        return java.nio.ByteBuffer.allocate(0);
+     }
+     java.nio.ByteBuffer bytes = source.duplicate();
+     bytes.position(0);
+     return bytes;
+  }
+
   public char readChar()
   {
-     try {
-        int c = source.read();
-        if (c == -1) {
-           c = EOT;
-        }
-        return (char) c;
-     } catch (java.io.IOException e) {
+     if (source == null || !source.hasRemaining()) {
         return EOT;
      }
+     return (char) (source.get() & 0xff);
   }
 
 }
@@ -0,0 +1,10 @@
+package MiniC.Scanner;
+
+// A SourceInput is the engine behind SourceFile: it loads the bytes of a
+// source file into a ByteBuffer positioned at the first byte.
+
+public interface SourceInput {
+
+  java.nio.ByteBuffer load (java.io.File file) throws java.io.IOException;
+
+}
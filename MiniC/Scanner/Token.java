@@ -7,47 +7,63 @@ final public class Token extends Object {
   public int kind;
   protected SourcePos src_pos;
   private String lexeme;
-  private static int overall_nrtokens = 0;
+  private static java.util.concurrent.atomic.AtomicInteger overall_nrtokens =
+      new java.util.concurrent.atomic.AtomicInteger();
   private int my_tokennr;
+  private TokenStream stream;
+  private int index;
+  private LineIndex lines;
+  private int start, length;
 
   public Token (int kind, String lexeme, SourcePos src_pos) {
-    if (kind == Token.ID) {
-       int index = firstKeyword;
-       boolean searching = true; 
-       while (searching) {
-          int compare = tokenTable[index].compareTo(lexeme);
-          if (compare == 0) {
-             this.kind = index;
-             searching = false;
-          } else if (compare > 0 || index == lastKeyword) {
-             this.kind = Token.ID;
-             searching = false;
-          } else {
-             index++;
-          }
-       }
-    } else {
-       this.kind = kind;
-    }
+    this.kind = (kind == Token.ID) ? keywordKind(lexeme) : kind;
     this.src_pos = src_pos;
     this.lexeme = lexeme;
-    overall_nrtokens++;
-    my_tokennr = overall_nrtokens;
+    my_tokennr = overall_nrtokens.incrementAndGet();
+  }
+
+  // Used by the scanner, which has already looked up identifiers with
+  // keywordKind() and numbers tokens in its ScannerContext. The token
+  // only records its offset range in the source; the SourcePos is
+  // resolved through lines when asked for.
+  Token (int kind, String lexeme, LineIndex lines, int start, int length,
+         int tokennr) {
+    this.kind = kind;
+    this.lexeme = lexeme;
+    this.lines = lines;
+    this.start = start;
+    this.length = length;
+    my_tokennr = tokennr;
+  }
+
+  // A token read from a TokenStream, numbered by its place in the
+  // stream. Its lexeme and position are taken from the stream the
+  // first time they are asked for.
+  Token (TokenStream stream, int index) {
+    this(stream.kind(index), null, stream.getLineIndex(),
+         stream.start(index), stream.length(index), index + 1);
+    this.stream = stream;
+    this.index = index;
   }
 
   public void print() {
-      System.out.println("token" + my_tokennr + ".kind = Token."
-                         + tokenTable[kind].toUpperCase());
-      System.out.println("token" + my_tokennr + ".lexeme = \""
-                         + lexeme + "\"");
-      System.out.println("token" + my_tokennr + ".src_pos.StartLine = "
-                         + src_pos.StartLine);
-      System.out.println("token" + my_tokennr + ".src_pos.EndLine = "
-                         + src_pos.EndLine);
-      System.out.println("token" + my_tokennr + ".src_pos.StartCol = "
-                         + src_pos.StartCol);
-      System.out.println("token" + my_tokennr + ".src_pos.EndCol = "
-                         + src_pos.EndCol + "\n");
+      print(System.out);
+  }
+
+  public void print(java.io.PrintStream out) {
+      out.println("token" + my_tokennr + ".kind = Token."
+                  + tokenTable[kind].toUpperCase());
+      out.println("token" + my_tokennr + ".lexeme = \""
+                  + GetLexeme() + "\"");
+      SourcePos src_pos = GetSourcePos();
+      out.println("token" + my_tokennr + ".src_pos.StartLine = "
+                  + src_pos.StartLine);
+      out.println("token" + my_tokennr + ".src_pos.EndLine = "
+                  + src_pos.EndLine);
+      out.println("token" + my_tokennr + ".src_pos.StartCol = "
+                  + src_pos.StartCol);
+      out.println("token" + my_tokennr + ".src_pos.EndCol = "
+                  + src_pos.EndCol + "\n");
   }
 
   public final static int
@@ -183,15 +199,130 @@ final public class Token extends Object {
     private final static int firstKeyword = Token.BOOL,
                              lastKeyword = Token.WHILE;
 
+    // Keywords are found through a perfect hash on the length and the
+    // first and last character. The multiplier is searched when the
+    // class is loaded, so new keywords only need an entry between
+    // firstKeyword and lastKeyword above.
+    private static int[] keywordSlots;
+    private static int keywordMask;
+    private static int keywordSeed;
+    private static int minKeywordLength = Integer.MAX_VALUE,
+                       maxKeywordLength = 0;
+
+    static {
+       for (int k = firstKeyword; k <= lastKeyword; k++) {
+          minKeywordLength = Math.min(minKeywordLength, tokenTable[k].length());
+          maxKeywordLength = Math.max(maxKeywordLength, tokenTable[k].length());
+       }
+       int size = Integer.highestOneBit(lastKeyword - firstKeyword + 1) * 4;
+       while (!placeKeywords(size)) {
+          size *= 2;
+       }
+    }
+
+    // Tries all seeds for a table of the given size and keeps the
+    // first one under which no two keywords share a slot.
+    private static boolean placeKeywords(int size) {
+       keywordMask = size - 1;
+       keywordSlots = new int[size];
+       for (keywordSeed = 1; keywordSeed < 256; keywordSeed++) {
+          java.util.Arrays.fill(keywordSlots, -1);
+          boolean collision = false;
+          for (int k = firstKeyword; k <= lastKeyword && !collision; k++) {
+             String word = tokenTable[k];
+             int slot = keywordHash(word.length(), word.charAt(0),
+                                    word.charAt(word.length() - 1));
+             if (keywordSlots[slot] == -1) {
+                keywordSlots[slot] = k;
+             } else {
+                collision = true;
+             }
+          }
+          if (!collision) {
+             return true;
+          }
+       }
+       return false;
+    }
+
+    private static int keywordHash(int length, int first, int last) {
+       return (first * keywordSeed + last + length) & keywordMask;
+    }
+
+    // keywordKind() returns the keyword kind of the given spelling,
+    // or Token.ID if it is not a keyword.
+    public static int keywordKind(String spelling) {
+       int length = spelling.length();
+       if (length < minKeywordLength || length > maxKeywordLength) {
+          return Token.ID;
+       }
+       int k = keywordSlots[keywordHash(length, spelling.charAt(0),
+                                        spelling.charAt(length - 1))];
+       if (k != -1 && tokenTable[k].equals(spelling)) {
+          return k;
+       }
+       return Token.ID;
+    }
+
+    // Same as above for the bytes [start, start + length) of a source
+    // buffer, so the scanner can classify identifiers before it builds
+    // a String for them.
+    public static int keywordKind(java.nio.ByteBuffer bytes, int start, int length) {
+       if (length < minKeywordLength || length > maxKeywordLength) {
+          return Token.ID;
+       }
+       int k = keywordSlots[keywordHash(length, bytes.get(start),
+                                        bytes.get(start + length - 1))];
+       if (k == -1) {
+          return Token.ID;
+       }
+       String word = tokenTable[k];
+       if (word.length() != length) {
+          return Token.ID;
+       }
+       for (int i = 0; i < length; i++) {
+          if (word.charAt(i) != bytes.get(start + i)) {
+             return Token.ID;
+          }
+       }
+       return k;
+    }
+
     public static String spell (int kind) {
 	return lexemeTable[kind];
     }
 
     public SourcePos GetSourcePos() {
+	if (src_pos == null && lines != null) {
+	    src_pos = lines.sourcePos(start, length);
+	}
 	return src_pos;
     } 
 
+    // offset of the first character of this token in the source,
+    // or -1 if the token was built from a SourcePos only
+    public int GetStartOffset() {
+	return lines != null ? start : -1;
+    }
+
+    public int GetLength() {
+	return length;
+    }
+
+    // the TokenStream this token was read from, or null
+    public TokenStream GetStream() {
+	return stream;
+    }
+
+    // index of this token in the TokenStream it was read from, or -1
+    public int GetStreamIndex() {
+	return stream != null ? index : -1;
+    }
+
     public String GetLexeme() {
+	if (lexeme == null && stream != null) {
+	    lexeme = stream.lexeme(index);
+	}
 	return lexeme;
     } 
 
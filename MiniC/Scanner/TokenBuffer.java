@@ -0,0 +1,126 @@
+package MiniC.Scanner;
+
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenSource;
+
+// A TokenBuffer sits between a TokenSource and the parser and gives
+// bounded lookahead: peek(k) returns the k-th token ahead without
+// consuming it, consume() takes the next one. Tokens are kept in a
+// ring of power-of-two size, so lookahead scans every character only
+// once and allocates nothing in the steady state.
+//
+// mark() remembers the current position and reset() returns to it,
+// for trial parses. While a mark is set, consumed tokens stay in the
+// ring, which grows if the trial parse runs further ahead than its
+// size. Marks do not nest.
+//
+// After the EOF token the source is not asked again; peek() and
+// consume() keep returning that EOF token.
+
+public class TokenBuffer implements TokenSource {
+
+  private TokenSource source;
+  private Token[] ring;
+  private int mask;
+  private int head;	// number of tokens consumed so far
+  private int tail;	// number of tokens fetched from source
+  private int mark;
+  private boolean marked;
+  private Token eof;
+
+  public TokenBuffer (TokenSource source, int lookahead) {
+    int size = 2;
+    while (size < lookahead + 1) {
+       size <<= 1;
+    }
+    this.source = source;
+    ring = new Token[size];
+    mask = size - 1;
+  }
+
+  public Token scan() {
+    return consume();
+  }
+
+  public Token consume() {
+    Token t = peek(1);
+    if (t != eof || head != tail) {
+       head++;
+    }
+    return t;
+  }
+
+  // peek(1) is the token the next consume() returns.
+  public Token peek (int k) {
+    if (k < 1) {
+       throw new IllegalArgumentException("lookahead " + k);
+    }
+    while (tail - head < k) {
+       if (eof != null) {
+          return eof;
+       }
+       fetch();
+    }
+    return ring[(head + k - 1) & mask];
+  }
+
+  public int peekKind (int k) {
+    return peek(k).kind;
+  }
+
+  public void mark() {
+    mark = head;
+    marked = true;
+  }
+
+  // Returns to the position of the last mark() and drops the mark.
+  public void reset() {
+    if (!marked) {
+       throw new IllegalStateException("reset without mark");
+    }
+    head = mark;
+    marked = false;
+  }
+
+  // Drops the mark and keeps the current position.
+  public void release() {
+    marked = false;
+  }
+
+  // Forgets the tokens fetched but not consumed yet, after the source
+  // has been moved to another position. Not allowed while marked.
+  public void discardAhead() {
+    if (marked) {
+       throw new IllegalStateException("discardAhead while marked");
+    }
+    tail = head;
+    eof = null;
+  }
+
+  private void fetch() {
+    int oldest = marked ? mark : head;
+    if (tail - oldest == ring.length) {
+       if (!marked) {
+          throw new IllegalArgumentException("lookahead beyond " + ring.length
+                                             + " tokens");
+       }
+       grow(oldest);
+    }
+    Token t = source.scan();
+    ring[tail & mask] = t;
+    tail++;
+    if (t.kind == Token.EOF) {
+       eof = t;
+    }
+  }
+
+  private void grow (int oldest) {
+    Token[] bigger = new Token[2 * ring.length];
+    for (int i = oldest; i != tail; i++) {
+       bigger[i & (bigger.length - 1)] = ring[i & mask];
+    }
+    ring = bigger;
+    mask = bigger.length - 1;
+  }
+
+}
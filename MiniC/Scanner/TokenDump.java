@@ -0,0 +1,189 @@
+package MiniC.Scanner;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenStream;
+
+// Binary dump of a TokenStream, so that a scan can be recorded once
+// and replayed into the parser (see ReplayScanner) or compared with
+// another scan. Layout, all ints big-endian:
+//
+//   int     MAGIC
+//   int     n, followed by the n bytes of the source
+//   int     number of tokens, then per token:
+//             byte    kind
+//             varint  gap between the end of the previous token and
+//                     the start of this one
+//             varint  length
+//   int     number of scanner messages, then per message:
+//             varint  token index
+//             UTF     message text
+//
+// The source is part of the dump, so lexemes and positions of
+// replayed tokens are the same as those of the recorded ones.
+
+public class TokenDump {
+
+  public static final int MAGIC = 0x4D544B31;	// "MTK1"
+
+  public static void write (TokenStream stream, java.io.OutputStream os)
+      throws IOException {
+    DataOutputStream out = new DataOutputStream(new java.io.BufferedOutputStream(os));
+    ByteBuffer source = stream.getSource();
+    int end = 0;
+
+    out.writeInt(MAGIC);
+    out.writeInt(source.limit());
+    ByteBuffer bytes = source.duplicate();
+    bytes.position(0);
+    byte[] chunk = new byte[8192];
+    while (bytes.hasRemaining()) {
+       int n = Math.min(chunk.length, bytes.remaining());
+       bytes.get(chunk, 0, n);
+       out.write(chunk, 0, n);
+    }
+    out.writeInt(stream.size());
+    for (int i = 0; i < stream.size(); i++) {
+       out.writeByte(stream.kind(i));
+       writeVarint(out, stream.start(i) - end);
+       writeVarint(out, stream.length(i));
+       end = stream.start(i) + stream.length(i);
+    }
+    out.writeInt(stream.nrMessages());
+    for (int m = 0; m < stream.nrMessages(); m++) {
+       writeVarint(out, stream.messageToken(m));
+       out.writeUTF(stream.message(m));
+    }
+    out.flush();
+  }
+
+  // Reads a dump written by write(). Everything in it is checked
+  // before it is used, and a dump that is cut short or inconsistent
+  // is rejected with an IOException. Nothing is allocated from the
+  // counts in the dump alone, so a damaged count runs into the end
+  // of the input rather than out of memory.
+  public static TokenStream read (java.io.InputStream is) throws IOException {
+    DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(is));
+    if (in.readInt() != MAGIC) {
+       throw new IOException("not a token dump");
+    }
+    byte[] bytes = readBytes(in, count(in.readInt(), "source length"));
+    ByteBuffer source = ByteBuffer.wrap(bytes);
+    int nrTokens = count(in.readInt(), "number of tokens");
+    TokenStream stream = new TokenStream(source, new LineIndex(source), 0);
+    int end = 0;
+
+    for (int i = 0; i < nrTokens; i++) {
+       int kind = in.readUnsignedByte();
+       if (kind > Token.EOF) {
+          throw new IOException("token " + i + " has kind " + kind);
+       }
+       int gap = readVarint(in);
+       int length = readVarint(in);
+       if (gap > bytes.length - end || length > bytes.length - end - gap) {
+          throw new IOException("token " + i + " lies outside the source");
+       }
+       int start = end + gap;
+       stream.add(kind, start, length);
+       end = start + length;
+    }
+    if (nrTokens == 0 || stream.kind(nrTokens - 1) != Token.EOF) {
+       throw new IOException("no EOF token at the end");
+    }
+    int nrMessages = count(in.readInt(), "number of messages");
+    int last = 0;
+    for (int m = 0; m < nrMessages; m++) {
+       int i = readVarint(in);
+       if (i < last || i >= nrTokens) {
+          throw new IOException("message " + m + " for token " + i);
+       }
+       stream.addMessage(i, in.readUTF());
+       last = i;
+    }
+    return stream;
+  }
+
+  private static int count (int n, String what) throws IOException {
+    if (n < 0) {
+       throw new IOException(what + " " + n);
+    }
+    return n;
+  }
+
+  // Reads n bytes, in pieces, so that a wrong n cannot allocate more
+  // than the input holds.
+  private static byte[] readBytes (DataInputStream in, int n) throws IOException {
+    java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream(Math.min(n, 8192));
+    byte[] chunk = new byte[8192];
+    while (bytes.size() < n) {
+       int got = in.read(chunk, 0, Math.min(chunk.length, n - bytes.size()));
+       if (got < 0) {
+          throw new java.io.EOFException();
+       }
+       bytes.write(chunk, 0, got);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static void write (TokenStream stream, String filename) throws IOException {
+    java.io.FileOutputStream out = new java.io.FileOutputStream(filename);
+    try {
+       write(stream, out);
+    } finally {
+       out.close();
+    }
+  }
+
+  public static TokenStream read (String filename) throws IOException {
+    java.io.FileInputStream in = new java.io.FileInputStream(filename);
+    try {
+       return read(in);
+    } finally {
+       in.close();
+    }
+  }
+
+  // Index of the first token whose kind or offsets differ between
+  // a and b, or -1 if both streams hold the same tokens.
+  public static int firstDifference (TokenStream a, TokenStream b) {
+    int n = Math.min(a.size(), b.size());
+    for (int i = 0; i < n; i++) {
+       if (a.kind(i) != b.kind(i) || a.start(i) != b.start(i)
+           || a.length(i) != b.length(i)) {
+          return i;
+       }
+    }
+    return (a.size() == b.size()) ? -1 : n;
+  }
+
+  private static void writeVarint (DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+       out.writeByte((value & 0x7f) | 0x80);
+       value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarint (DataInputStream in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+       if (shift > 28) {
+          throw new IOException("varint too long");
+       }
+       b = in.readUnsignedByte();
+       value |= (b & 0x7f) << shift;
+       shift += 7;
+    } while ((b & 0x80) != 0);
+    if (value < 0) {
+       throw new IOException("varint out of range");
+    }
+    return value;
+  }
+
+}
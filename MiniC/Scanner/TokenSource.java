@@ -0,0 +1,13 @@
+package MiniC.Scanner;
+
+import MiniC.Scanner.Token;
+
+// A TokenSource delivers one token per call to scan(); after the
+// end of the input it keeps returning EOF tokens. The parser reads
+// its tokens through this interface.
+
+public interface TokenSource {
+
+  Token scan();
+
+}
@@ -0,0 +1,309 @@
+package MiniC.Scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import MiniC.Scanner.SourcePos;
+import MiniC.Scanner.Token;
+
+// A TokenStream holds scanned tokens as parallel int arrays of kind,
+// start offset and length in the source buffer, i.e. 12 bytes per token.
+// The offset range of a token covers all of its characters, including
+// the quotes of a string literal. Lexemes and source positions are
+// only computed when asked for.
+//
+// A stream that IncrementalScanner edits is a gap buffer: tokens
+// [0, split) are at the start of the arrays, tokens [split, count) at
+// their end, and the free slots in between. The start offsets of the
+// tokens at the end are counted from the end of the source, so an
+// edit in front of them does not change them. Their text likewise
+// follows a gap in the source buffer, at sourceGap. A stream that is
+// only built has its gaps at the end.
+
+public class TokenStream {
+
+  private ByteBuffer source;
+  private int sourceLength;	// bytes of text in source, without the gap
+  private int sourceGap;	// offset of the gap in source
+  private int[] kinds;
+  private int[] starts;
+  private int[] lengths;
+  private int count;
+  private int split;		// tokens from here on are at the end
+  private LineIndex lines;
+  private int[] messageTokens;	// scanner messages, ordered by token
+  private String[] messages;
+  private int nrMessages;
+
+  public TokenStream (ByteBuffer source, LineIndex lines, int capacity) {
+    this.source = source;
+    this.lines = lines;
+    sourceLength = source.limit();
+    sourceGap = sourceLength;
+    capacity = Math.max(capacity, 16);
+    kinds = new int[capacity];
+    starts = new int[capacity];
+    lengths = new int[capacity];
+    count = 0;
+  }
+
+  // Adds a token at the end of a stream that is being built.
+  public void add (int kind, int start, int length) {
+    if (count == kinds.length) {
+       int capacity = 2 * count;
+       kinds = java.util.Arrays.copyOf(kinds, capacity);
+       starts = java.util.Arrays.copyOf(starts, capacity);
+       lengths = java.util.Arrays.copyOf(lengths, capacity);
+    }
+    kinds[count] = kind;
+    starts[count] = start;
+    lengths[count] = length;
+    count++;
+    split = count;
+  }
+
+  // Copies the tokens [from, to) of other, with their messages,
+  // to the end of this stream. Both must scan the same source.
+  public void append (TokenStream other, int from, int to) {
+    for (int i = from; i < to; i++) {
+       add(other.kind(i), other.start(i), other.length(i));
+    }
+    for (int m = 0; m < other.nrMessages; m++) {
+       int i = other.messageTokens[m];
+       if (i >= from && i < to) {
+          addMessage(count - to + i, other.messages[m]);
+       }
+    }
+  }
+
+  // Records a scanner error message that was reported while token i
+  // was scanned. Messages must be added in token order.
+  public void addMessage (int i, String message) {
+    if (messages == null) {
+       messageTokens = new int[4];
+       messages = new String[4];
+    } else if (nrMessages == messages.length) {
+       messageTokens = java.util.Arrays.copyOf(messageTokens, 2 * nrMessages);
+       messages = java.util.Arrays.copyOf(messages, 2 * nrMessages);
+    }
+    messageTokens[nrMessages] = i;
+    messages[nrMessages] = message;
+    nrMessages++;
+  }
+
+  public int nrMessages() {
+    return nrMessages;
+  }
+
+  public int messageToken (int m) {
+    return messageTokens[m];
+  }
+
+  public String message (int m) {
+    return messages[m];
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public int kind (int i) {
+    return kinds[slot(i)];
+  }
+
+  public int start (int i) {
+    return (i < split) ? starts[i] : starts[i + kinds.length - count] + sourceLength;
+  }
+
+  public int length (int i) {
+    return lengths[slot(i)];
+  }
+
+  // index in the arrays of token i
+  private int slot (int i) {
+    return (i < split) ? i : i + kinds.length - count;
+  }
+
+  // offset of token i in the source buffer, which is past the gap for
+  // the tokens at the end
+  private int offset (int i) {
+    return (i < split) ? starts[i] : starts[i + kinds.length - count] + source.limit();
+  }
+
+  // The source text. That of a stream that IncrementalScanner edits
+  // is copied out of its buffer.
+  public ByteBuffer getSource() {
+    if (sourceLength == source.limit()) {
+       return source;
+    }
+    ByteBuffer text = ByteBuffer.allocate(sourceLength);
+    ByteBuffer part = source.duplicate();
+    part.position(0).limit(sourceGap);
+    text.put(part);
+    part = source.duplicate();
+    part.position(sourceGap + source.limit() - sourceLength);
+    text.put(part);
+    text.flip();
+    return text;
+  }
+
+  public int sourceLength() {
+    return sourceLength;
+  }
+
+  public String lexeme (int i) {
+    int start = offset(i);
+    int end = start + length(i);
+    switch (kind(i)) {
+    case Token.ID:
+    case Token.BOOLLITERAL:
+    case Token.INTLITERAL:
+    case Token.FLOATLITERAL:
+    case Token.ERROR:
+       return decode(start, end, StandardCharsets.ISO_8859_1);
+    case Token.STRINGLITERAL:
+       start++;
+       if (end > start && isClosingQuote(start, end - 1)) {
+          end--;
+       }
+       return decode(start, end, StandardCharsets.UTF_8);
+    case Token.EOF:
+       return "$";
+    default:
+       return Token.spell(kind(i));
+    }
+  }
+
+  // A '"' at pos ends the string literal whose text starts at from
+  // unless it is escaped, i.e. preceded by an odd number of '\'.
+  private boolean isClosingQuote (int from, int pos) {
+    if (source.get(pos) != '"') {
+       return false;
+    }
+    int backslashes = 0;
+    while (pos - backslashes > from && source.get(pos - backslashes - 1) == '\\') {
+       backslashes++;
+    }
+    return backslashes % 2 == 0;
+  }
+
+  private String decode (int start, int end, Charset charset) {
+    if (source.hasArray()) {
+       return new String(source.array(), source.arrayOffset() + start,
+                         end - start, charset);
+    }
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) {
+       bytes[i] = source.get(start + i);
+    }
+    return new String(bytes, charset);
+  }
+
+  public SourcePos sourcePos (int i) {
+    return lines.sourcePos(start(i), length(i));
+  }
+
+  public LineIndex getLineIndex() {
+    return lines;
+  }
+
+  // A Token for token i.
+  public Token token (int i) {
+    return new Token(this, i);
+  }
+
+  // Returns a TokenSource that delivers the tokens of this stream
+  // from the beginning.
+  public TokenSource reader() {
+    return new TokenStreamReader(this, 0, count);
+  }
+
+  // The following are the steps of an edit for IncrementalScanner.
+
+  // Makes the tokens [0, i) the ones at the start of the arrays. The
+  // gap in the source must then be moved to the end of token i - 1.
+  void moveGap (int i) {
+    int gap = kinds.length - count;
+    if (i < split) {
+       System.arraycopy(kinds, i, kinds, i + gap, split - i);
+       System.arraycopy(lengths, i, lengths, i + gap, split - i);
+       for (int j = split - 1; j >= i; j--) {
+          starts[j + gap] = starts[j] - sourceLength;
+       }
+    } else if (i > split) {
+       System.arraycopy(kinds, split + gap, kinds, split, i - split);
+       System.arraycopy(lengths, split + gap, lengths, split, i - split);
+       for (int j = split; j < i; j++) {
+          starts[j] = starts[j + gap] + sourceLength;
+       }
+    }
+    split = i;
+  }
+
+  // Sets the source buffer after an edit of its text: length bytes,
+  // with a gap at offset gap.
+  void setSource (ByteBuffer source, int gap, int length) {
+    this.source = source;
+    sourceGap = gap;
+    sourceLength = length;
+  }
+
+  // Replaces the tokens [split, to) by those of scanned, with their
+  // messages. scanned must come from the source buffer, past its gap.
+  void replace (int to, TokenStream scanned) {
+    int n = scanned.count;
+    int tail = count - to;
+    if (kinds.length - split - tail < n) {
+       int capacity = Math.max(2 * kinds.length, split + n + tail + 16);
+       kinds = grow(kinds, capacity, tail);
+       starts = grow(starts, capacity, tail);
+       lengths = grow(lengths, capacity, tail);
+    }
+    int at = kinds.length - tail - n;
+    System.arraycopy(scanned.kinds, 0, kinds, at, n);
+    System.arraycopy(scanned.lengths, 0, lengths, at, n);
+    for (int j = 0; j < n; j++) {
+       starts[at + j] = scanned.starts[j] - source.limit();
+    }
+    replaceMessages(to, scanned);
+    count = split + n + tail;
+  }
+
+  // the tokens [0, split) at the start of an array of size capacity,
+  // and the last tail ones at its end
+  private int[] grow (int[] array, int capacity, int tail) {
+    int[] bigger = new int[capacity];
+    System.arraycopy(array, 0, bigger, 0, split);
+    System.arraycopy(array, array.length - tail, bigger, capacity - tail, tail);
+    return bigger;
+  }
+
+  private void replaceMessages (int to, TokenStream scanned) {
+    if (nrMessages == 0 && scanned.nrMessages == 0) {
+       return;
+    }
+    int shift = scanned.count - (to - split);
+    int[] oldTokens = messageTokens;
+    String[] oldMessages = messages;
+    int m = 0;
+    int n = nrMessages;
+    messageTokens = null;
+    messages = null;
+    nrMessages = 0;
+    while (m < n && oldTokens[m] < split) {
+       addMessage(oldTokens[m], oldMessages[m]);
+       m++;
+    }
+    while (m < n && oldTokens[m] < to) {
+       m++;
+    }
+    for (int k = 0; k < scanned.nrMessages; k++) {
+       addMessage(split + scanned.messageTokens[k], scanned.messages[k]);
+    }
+    for (; m < n; m++) {
+       addMessage(oldTokens[m] + shift, oldMessages[m]);
+    }
+  }
+
+}
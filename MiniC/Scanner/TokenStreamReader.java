@@ -0,0 +1,53 @@
+package MiniC.Scanner;
+
+import MiniC.Scanner.Token;
+import MiniC.Scanner.TokenStream;
+
+// Delivers the tokens [from, to) of a TokenStream through the
+// TokenSource interface. Tokens are created on demand and compute
+// their lexeme and position only if asked for. Once the range is
+// exhausted the reader keeps returning its last token, which for a
+// whole stream is EOF.
+
+public class TokenStreamReader implements TokenSource {
+
+  private TokenStream stream;
+  private int from;
+  private int next;
+  private int to;
+
+  public TokenStreamReader (TokenStream stream, int from, int to) {
+    this.stream = stream;
+    this.from = from;
+    this.next = from;
+    this.to = to;
+  }
+
+  public Token scan() {
+    int i = next;
+    if (next < to - 1) {
+       next++;
+    }
+    return new Token(stream, i);
+  }
+
+  // starts over at the first token of the range
+  public void rewind() {
+    next = from;
+  }
+
+  public TokenStream getTokens() {
+    return stream;
+  }
+
+  // makes the token at index the one the next scan() returns
+  public void seek (int index) {
+    next = Math.max(from, Math.min(index, to - 1));
+  }
+
+  // index of the token the next scan() returns
+  public int position() {
+    return next;
+  }
+
+}
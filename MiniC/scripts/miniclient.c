@@ -0,0 +1,93 @@
+/*
+ * miniclient: a thin client for a compile server started with
+ *
+ *   java MiniC.MiniC --serve socket
+ *
+ * It sends its working directory and the name of the file, as it was
+ * given, on two lines, prints what the server prints for it, and
+ * exits with the status the server sends on its last line ("exit n"),
+ * as "java MiniC.MiniC filename" would. Unlike "java MiniC.MiniC
+ * --connect", it does not start a JVM per request.
+ *
+ *   cc -O2 -o miniclient miniclient.c	(or "make client" in MiniC)
+ *   miniclient socket filename
+ */
+
+#include <limits.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/socket.h>
+#include <sys/un.h>
+#include <unistd.h>
+
+int main(int argc, char **argv)
+{
+    struct sockaddr_un address;
+    char cwd[PATH_MAX], request[2 * PATH_MAX + 2];
+    char *reply = NULL, *status;
+    size_t size = 0, capacity = 0;
+    ssize_t n;
+    int fd, length;
+
+    if (argc != 3) {
+        fprintf(stderr, "Usage: miniclient socket filename\n");
+        return 1;
+    }
+    if (getcwd(cwd, sizeof cwd) == NULL) {
+        perror("getcwd");
+        return 1;
+    }
+    /* the server opens the name relative to cwd, and prints it as is */
+    length = snprintf(request, sizeof request, "%s\n%s\n", cwd, argv[2]);
+    if (length < 0 || length >= (int) sizeof request
+        || strlen(argv[1]) >= sizeof address.sun_path) {
+        fprintf(stderr, "miniclient: name too long\n");
+        return 1;
+    }
+
+    memset(&address, 0, sizeof address);
+    address.sun_family = AF_UNIX;
+    strcpy(address.sun_path, argv[1]);
+    fd = socket(AF_UNIX, SOCK_STREAM, 0);
+    if (fd < 0 || connect(fd, (struct sockaddr *) &address, sizeof address) < 0) {
+        printf("Error connecting to %s\n", argv[1]);
+        return 1;
+    }
+    if (write(fd, request, length) != length) {
+        perror("write");
+        return 1;
+    }
+    shutdown(fd, SHUT_WR);
+
+    /* keep the whole reply, as its last line is the status */
+    do {
+        if (size == capacity) {
+            capacity = capacity ? 2 * capacity : 8192;
+            reply = realloc(reply, capacity);
+            if (reply == NULL) {
+                perror("realloc");
+                return 1;
+            }
+        }
+        n = read(fd, reply + size, capacity - size);
+        if (n > 0) {
+            size += n;
+        }
+    } while (n > 0);
+    close(fd);
+
+    status = reply + size;
+    if (size > 0) {
+        status--;			/* the final newline */
+        while (status > reply && status[-1] != '\n') {
+            status--;
+        }
+    }
+    if (reply + size - status < 6 || strncmp(status, "exit ", 5) != 0) {
+        fwrite(reply, 1, size, stdout);
+        return 1;
+    }
+    fwrite(reply, 1, status - reply, stdout);
+    return atoi(status + 5);
+}